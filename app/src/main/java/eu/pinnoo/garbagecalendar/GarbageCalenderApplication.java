@@ -7,6 +7,12 @@ import com.google.android.gms.analytics.Tracker;
 
 import java.util.HashMap;
 
+import eu.pinnoo.garbagecalendar.data.CollectionsData;
+import eu.pinnoo.garbagecalendar.data.DataContainer;
+import eu.pinnoo.garbagecalendar.data.DataListener;
+import eu.pinnoo.garbagecalendar.data.UserData;
+import eu.pinnoo.garbagecalendar.ui.widget.WidgetProvider;
+
 /**
  * Created by Wouter on 30/01/2015.
  */
@@ -28,6 +34,21 @@ public class GarbageCalenderApplication extends Application
 
     HashMap<TrackerName, Tracker> mTrackers = new HashMap<TrackerName, Tracker>();
 
+    @Override
+    public void onCreate()
+    {
+        super.onCreate();
+        DataListener widgetUpdater = new DataListener()
+        {
+            public void onDataChanged(DataContainer source, int version)
+            {
+                WidgetProvider.requestUpdate(GarbageCalenderApplication.this);
+            }
+        };
+        UserData.getInstance().getNotifier().addListener(widgetUpdater);
+        CollectionsData.getInstance().getNotifier().addListener(widgetUpdater);
+    }
+
     public synchronized Tracker getTracker(TrackerName trackerId)
     {
         if (!mTrackers.containsKey(trackerId))
@@ -42,26 +42,22 @@ public class Address implements Serializable {
     public static final int FULL_MATCH = 2;
 
     public Address(PrimitiveAddress addr) {
-        streetname = addr.straatnaam;
-        code = addr.straatcode;
-        nrOddBegin = parseNumber(addr.oneven_van);
-        nrOddEnd = parseNumber(addr.oneven_tot);
-        nrEvenBegin = parseNumber(addr.even_van);
-        nrEvenEnd = parseNumber(addr.even_tot);
-        zipcode = parseNumber(addr.postcode);
-        city = addr.gemeente;
-        sector = new Sector(addr.sector);
+        this(addr.straatnaam, addr.straatcode,
+                parseNumber(addr.oneven_van), parseNumber(addr.oneven_tot),
+                parseNumber(addr.even_van), parseNumber(addr.even_tot),
+                parseNumber(addr.postcode), addr.gemeente, Sector.valueOf(addr.sector));
     }
 
-    public int matches(String s) {
-        s = s.toLowerCase();
-        if (streetname.toLowerCase().startsWith(s)) {
-            return FULL_MATCH;
-        }
-        if (streetname.toLowerCase().contains(s) || city.toLowerCase().contains(s)) {
-            return PARTIAL_MATCH;
-        }
-        return NO_MATCH;
+    public Address(String streetname, String code, int nrOddBegin, int nrOddEnd, int nrEvenBegin, int nrEvenEnd, int zipcode, String city, Sector sector) {
+        this.streetname = streetname;
+        this.code = code;
+        this.nrOddBegin = nrOddBegin;
+        this.nrOddEnd = nrOddEnd;
+        this.nrEvenBegin = nrEvenBegin;
+        this.nrEvenEnd = nrEvenEnd;
+        this.zipcode = zipcode;
+        this.city = city;
+        this.sector = sector;
     }
 
     public String getStreetname() {
@@ -76,14 +72,30 @@ public class Address implements Serializable {
         return city;
     }
 
-    public void setCity(String city) {
-        this.city = city;
-    }
-
     public Sector getSector() {
         return sector;
     }
 
+    public int getNrOddBegin() {
+        return nrOddBegin;
+    }
+
+    public int getNrOddEnd() {
+        return nrOddEnd;
+    }
+
+    public int getNrEvenBegin() {
+        return nrEvenBegin;
+    }
+
+    public int getNrEvenEnd() {
+        return nrEvenEnd;
+    }
+
+    public int getZipcode() {
+        return zipcode;
+    }
+
     public String getFormattedNr(Context c) {
         String str = "";
         if (nrEvenBegin != -1) {
@@ -121,7 +133,7 @@ public class Address implements Serializable {
         }
     }
 
-    private int parseNumber(String str) {
+    private static int parseNumber(String str) {
         int nr = -1;
         try {
             nr = Integer.parseInt(str);
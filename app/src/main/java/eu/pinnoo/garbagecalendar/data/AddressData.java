@@ -16,21 +16,26 @@
 package eu.pinnoo.garbagecalendar.data;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import eu.pinnoo.garbagecalendar.data.caches.AddressCache;
+import eu.pinnoo.garbagecalendar.data.util.AddressIndex;
+import eu.pinnoo.garbagecalendar.data.util.HouseNumberIndex;
 
 /**
+ * Holds the list of addresses. It is published as an immutable
+ * {@link Snapshot}, so readers never lock and never see it change under
+ * them.
  *
  * @author Wouter Pinnoo <pinnoo.wouter@gmail.com>
  */
 public class AddressData implements DataContainer {
 
     private static final AddressData instance = new AddressData();
-    private ArrayList<Address> addresses;
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
 
     private AddressData() {
-        addresses = new ArrayList<Address>();
     }
 
     public static AddressData getInstance() {
@@ -38,9 +43,12 @@ public class AddressData implements DataContainer {
     }
 
     @Override
-    public int initialize() {
-        if (addresses == null || addresses.isEmpty()) {
-            addresses = AddressCache.getInstance().get(LocalConstants.CacheName.ADDRESS_DATA.toString());
+    public synchronized int initialize() {
+        if (!isSet()) {
+            List<Address> cached = AddressCache.getInstance().get(LocalConstants.CacheName.ADDRESS_DATA.toString());
+            if (cached != null) {
+                publish(cached);
+            }
             return 0;
         } else {
             return 1;
@@ -48,23 +56,76 @@ public class AddressData implements DataContainer {
     }
 
     public boolean isSet() {
-        return addresses != null && !addresses.isEmpty();
+        return !snapshot.getAddresses().isEmpty();
     }
 
-    public void resetAddresses() {
-        if (isSet()) {
-            addresses.clear();
-        }
-        AddressCache.getInstance().clear();
+    public synchronized void resetAddresses() {
+        publish(new ArrayList<Address>());
+        AddressCache.getInstance().invalidate(LocalConstants.CacheName.ADDRESS_DATA.toString());
+    }
+
+    /**
+     * Publishes the addresses right away; they are written to the cache in
+     * the background.
+     *
+     * @param list the addresses, sorted with
+     * {@link eu.pinnoo.garbagecalendar.data.util.AddressComparator#sort}; it
+     * must not be modified afterwards
+     */
+    public synchronized void setAddresses(ArrayList<Address> list) {
+        publish(list);
+        AddressCache.getInstance().putBehind(LocalConstants.CacheName.ADDRESS_DATA.toString(), list);
+    }
+
+    private void publish(List<Address> list) {
+        snapshot = new Snapshot(list, snapshot.version + 1);
     }
 
-    public void setAddresses(ArrayList<Address> list) {
-        resetAddresses();
-        addresses = list;
-        AddressCache.getInstance().put(LocalConstants.CacheName.ADDRESS_DATA.toString(), addresses);
+    public Snapshot getSnapshot() {
+        return snapshot;
     }
 
     public List<Address> getAddresses() {
-        return addresses;
+        return snapshot.getAddresses();
+    }
+
+    /**
+     * An immutable version of the sorted list of addresses, with its search
+     * indexes.
+     */
+    public static final class Snapshot {
+
+        static final Snapshot EMPTY = new Snapshot(Collections.<Address>emptyList(), 0);
+        private final List<Address> addresses;
+        private final int version;
+        private final AddressIndex index;
+        private final HouseNumberIndex houseNumbers;
+
+        private Snapshot(List<Address> addresses, int version) {
+            this.addresses = Collections.unmodifiableList(addresses);
+            this.version = version;
+            this.index = new AddressIndex(this.addresses);
+            this.houseNumbers = new HouseNumberIndex(this.addresses);
+        }
+
+        /**
+         * @return the number of times the list was replaced before this
+         * version
+         */
+        public int getVersion() {
+            return version;
+        }
+
+        public List<Address> getAddresses() {
+            return addresses;
+        }
+
+        public AddressIndex getIndex() {
+            return index;
+        }
+
+        public HouseNumberIndex getHouseNumbers() {
+            return houseNumbers;
+        }
     }
 }
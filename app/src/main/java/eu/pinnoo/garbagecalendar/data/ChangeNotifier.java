@@ -0,0 +1,43 @@
+/* 
+ * Copyright 2014 Wouter Pinnoo
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.pinnoo.garbagecalendar.data;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The listeners of a data container. Listeners can be added and removed
+ * from any thread, also while a change is being reported.
+ *
+ * @author Wouter Pinnoo <pinnoo.wouter@gmail.com>
+ */
+public class ChangeNotifier {
+
+    private final CopyOnWriteArrayList<DataListener> listeners = new CopyOnWriteArrayList<DataListener>();
+
+    public void addListener(DataListener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    public void removeListener(DataListener listener) {
+        listeners.remove(listener);
+    }
+
+    void fire(DataContainer source, int version) {
+        for (DataListener listener : listeners) {
+            listener.onDataChanged(source, version);
+        }
+    }
+}
@@ -18,12 +18,11 @@ package eu.pinnoo.garbagecalendar.data;
 import android.content.Context;
 
 import java.io.Serializable;
-import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
 
 import eu.pinnoo.garbagecalendar.R;
+import eu.pinnoo.garbagecalendar.util.DateDecoder;
 
 /**
  *
@@ -31,45 +30,54 @@ import eu.pinnoo.garbagecalendar.R;
  */
 public class Collection implements Serializable {
 
-    private static final long serialVersionUID = -4787102199050536373L;
-    private Date date;
-    private ArrayList<Type> types;
-    private Sector sector;
+    private static final long serialVersionUID = -5532297771395581092L;
+    private static final String[] FRACTIONS = {
+        "REST", "GFT", "PMD", "PAPIER", "PAPIER & KARTON", "GLAS", "GROFVUIL OP AANVRAAG", "KERSTBOMEN"
+    };
+    private static final Type[] FRACTION_TYPES = {
+        Type.REST, Type.GFT, Type.PMD, Type.PK, Type.PK, Type.GLAS, Type.GROF, Type.KERSTBOOM
+    };
+    private final int day;
+    private final int types;
+    private final Sector sector;
+
+    /**
+     * @param day the day of the collection, in days since 1970-01-01
+     * @param types a mask of {@link Type#getMask()} bits
+     * @param sector the sector, usually shared between all collections of a
+     * calendar
+     */
+    public Collection(int day, int types, Sector sector) {
+        this.day = day;
+        this.types = types;
+        this.sector = sector;
+    }
 
-    public Collection(PrimitiveCollection col) {
-        try {
-            this.date = LocalConstants.DateFormatType.REVERSE.getDateFormatter(null).parse(col.datum);
-        } catch (ParseException ex) {
-            this.date = new Date();
-        }
-        this.types = parseGarbageType(col.fractie);
-        this.sector = new Sector(col.sector);
+    /**
+     * @return the day of this collection, in days since 1970-01-01
+     */
+    public int getDay() {
+        return day;
     }
 
     public Date getDate() {
-        return date;
+        return DateDecoder.toDate(day);
     }
 
     public ArrayList<Type> getTypes() {
+        return Type.fromMask(types);
+    }
+
+    public int getTypeMask() {
         return types;
     }
 
     public boolean hasAnyNormalType() {
-        for (Type t : types) {
-            if (!t.isExtraType()) {
-                return true;
-            }
-        }
-        return false;
+        return (types & Type.NORMAL_MASK) != 0;
     }
 
     public boolean hasAnyExtralType() {
-        for (Type t : types) {
-            if (t.isExtraType()) {
-                return true;
-            }
-        }
-        return false;
+        return (types & Type.EXTRA_MASK) != 0;
     }
 
     public String getTypesToString(Context c) {
@@ -79,82 +87,74 @@ public class Collection implements Serializable {
     public String getTypesToString(Context c, boolean includeExtras, boolean includeNormals) {
         StringBuilder text = new StringBuilder();
 
-        ArrayList<Type> l = new ArrayList<Type>();
-        for (Type t : types) {
-            if (t.isExtraType()) {
-                if (includeExtras) {
-                    l.add(t);
-                }
-            } else {
-                if (includeNormals) {
-                    l.add(t);
-                }
+        int mask = types & ((includeExtras ? Type.EXTRA_MASK : 0) | (includeNormals ? Type.NORMAL_MASK : 0));
+        int count = Integer.bitCount(mask);
+        int i = 0;
+        for (Type t : Type.values()) {
+            if ((mask & t.getMask()) == 0) {
+                continue;
             }
-        }
-
-        for (int i = 0; i < l.size(); i++) {
-            text.append(l.get(i).longStrValue(c));
-            if (i < l.size() - 2) {
+            text.append(t.longStrValue(c));
+            if (i < count - 2) {
                 text.append(", ");
             }
-            if (i == l.size() - 2) {
+            if (i == count - 2) {
                 text.append(", ");
                 text.append(c.getString(R.string.and));
                 text.append(" ");
             }
+            i++;
         }
         text.append(".");
         return text.toString();
     }
 
-    public void addTypes(ArrayList<Type> newtypes) {
-        for (Type t : newtypes) {
-            if (!types.contains(t)) {
-                types.add(t);
-            }
-        }
-    }
-
     public boolean hasType(Type t) {
-        if (t != null) {
-            for (Type type : getTypes()) {
-                if (type.equals(t)) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return t != null && (types & t.getMask()) != 0;
     }
 
     public Sector getSector() {
         return sector;
     }
 
-    public static ArrayList<Type> parseGarbageType(String str) {
-        HashMap<String, Type> map = new HashMap<String, Type>();
-        map.put("REST", Type.REST);
-        map.put("GFT", Type.GFT);
-        map.put("PMD", Type.PMD);
-        map.put("PAPIER", Type.PK);
-        map.put("GLAS", Type.GLAS);
-        map.put("GROFVUIL OP AANVRAAG", Type.GROF);
-        map.put("KERSTBOMEN", Type.KERSTBOOM);
-
-        String[] splittedTypes = str.split("/");
-        ArrayList<Type> results = new ArrayList<Type>();
-
-        for (int i = 0; i < splittedTypes.length; i++) {
-            Type newtype;
-            if (map.containsKey(splittedTypes[i].trim())) {
-                newtype = map.get(splittedTypes[i].trim());
-            } else {
-                newtype = Type.NONE;
-            }
-            if (!results.contains(newtype)) {
-                results.add(newtype);
+    /**
+     * Parses a fraction string of the feeds, e.g. "Rest/GFT", into a mask of
+     * {@link Type#getMask()} bits. Unknown fractions map to {@link Type#NONE}.
+     */
+    public static int parseGarbageType(String str) {
+        if (str == null) {
+            return Type.NONE.getMask();
+        }
+        int mask = 0;
+        int start = 0;
+        int length = str.length();
+        while (start < length) {
+            int end = str.indexOf('/', start);
+            if (end < 0) {
+                end = length;
             }
+            mask |= parseFraction(str, start, end);
+            start = end + 1;
         }
+        return mask == 0 ? Type.NONE.getMask() : mask;
+    }
 
-        return results;
+    private static int parseFraction(String str, int start, int end) {
+        while (start < end && str.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && str.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        int length = end - start;
+        if (length == 0) {
+            return 0;
+        }
+        for (int i = 0; i < FRACTIONS.length; i++) {
+            if (FRACTIONS[i].length() == length && str.regionMatches(true, start, FRACTIONS[i], 0, length)) {
+                return FRACTION_TYPES[i].getMask();
+            }
+        }
+        return Type.NONE.getMask();
     }
 }
@@ -16,21 +16,35 @@
 package eu.pinnoo.garbagecalendar.data;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 import eu.pinnoo.garbagecalendar.data.caches.CollectionCache;
+import eu.pinnoo.garbagecalendar.data.caches.MappedCollectionList;
+import eu.pinnoo.garbagecalendar.data.caches.ValidatorCache;
+import eu.pinnoo.garbagecalendar.util.DateDecoder;
+import eu.pinnoo.garbagecalendar.util.Validators;
 
 /**
+ * Holds the calendar of the whole city, grouped per sector, and exposes the
+ * collections of the user's sector as a view on it. Changing address only
+ * selects another range of the calendar.
+ *
+ * The calendar is published as an immutable {@link Snapshot}: readers never
+ * lock and keep a consistent view for as long as they hold on to it, while
+ * writers swap in a new snapshot when they are done.
  *
  * @author Wouter Pinnoo <pinnoo.wouter@gmail.com>
  */
 public class CollectionsData implements DataContainer {
 
     private static final CollectionsData instance = new CollectionsData();
-    private ArrayList<Collection> collections;
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<Snapshot>(Snapshot.EMPTY);
+    private final Object writeLock = new Object();
+    private final ChangeNotifier notifier = new ChangeNotifier();
 
     private CollectionsData() {
-        collections = new ArrayList<Collection>();
     }
 
     public static CollectionsData getInstance() {
@@ -39,32 +53,225 @@ public class CollectionsData implements DataContainer {
 
     @Override
     public int initialize() {
-        if (collections == null || collections.isEmpty()) {
-            collections = CollectionCache.getInstance().get(LocalConstants.CacheName.COLLECTIONS_DATA.toString());
-            return 0;
-        } else {
-            return 1;
+        int version;
+        synchronized (writeLock) {
+            if (hasCalendar()) {
+                return 1;
+            }
+            List<Collection> cached = CollectionCache.getInstance().map(LocalConstants.CacheName.COLLECTIONS_DATA.toString());
+            if (cached == null) {
+                return 0;
+            }
+            version = publish(cached);
         }
+        notifier.fire(this, version);
+        return 0;
     }
 
     public void resetCollections() {
-        if (isSet()) {
-            collections.clear();
+        int version;
+        synchronized (writeLock) {
+            version = publish(new ArrayList<Collection>());
+            CollectionCache.getInstance().invalidate(LocalConstants.CacheName.COLLECTIONS_DATA.toString());
         }
-        CollectionCache.getInstance().clear();
+        notifier.fire(this, version);
     }
 
+    /**
+     * Publishes the calendar right away; it is written to the cache in the
+     * background.
+     *
+     * @param list the calendar of the whole city, grouped per sector and
+     * sorted by day within each sector; it must not be modified afterwards
+     */
     public void setCollections(ArrayList<Collection> list) {
-        resetCollections();
-        collections = list;
-        CollectionCache.getInstance().put(LocalConstants.CacheName.COLLECTIONS_DATA.toString(), collections);
+        String key = LocalConstants.CacheName.COLLECTIONS_DATA.toString();
+        int version;
+        synchronized (writeLock) {
+            version = publish(list);
+            CollectionCache.getInstance().putBehind(key, list);
+        }
+        notifier.fire(this, version);
+    }
+
+    /**
+     * Swaps in a new calendar. The caller notifies the listeners once it
+     * released the write lock, so they never run while holding it.
+     *
+     * @return the version of the new calendar
+     */
+    private int publish(List<Collection> calendar) {
+        Snapshot current;
+        Snapshot next;
+        do {
+            current = snapshot.get();
+            next = new Snapshot(calendar, current.version + 1);
+        } while (!snapshot.compareAndSet(current, next));
+        return next.version;
+    }
+
+    /**
+     * @return the version of the current calendar
+     */
+    public int getVersion() {
+        return snapshot.get().version;
+    }
+
+    public ChangeNotifier getNotifier() {
+        return notifier;
     }
 
+    /**
+     * @return the current calendar, with the user's sector selected
+     */
+    public Snapshot getSnapshot() {
+        Snapshot current = snapshot.get();
+        Sector sector = UserData.getInstance().isSet() ? UserData.getInstance().getAddress().getSector() : null;
+        if (current.sector == sector) {
+            return current;
+        }
+        Snapshot selected = current.select(sector);
+        snapshot.compareAndSet(current, selected);
+        return selected;
+    }
+
+    /**
+     * @return the collections of the user's sector
+     */
     public List<Collection> getCollections() {
-        return collections;
+        return getSnapshot().getCollections();
+    }
+
+    /**
+     * @return whether the calendar of the city is loaded, whatever sector it
+     * covers
+     */
+    public boolean hasCalendar() {
+        return snapshot.get().hasCalendar();
+    }
+
+    /**
+     * @return whether a newer calendar should be looked for: it does not
+     * cover the user's sector, or the feed was last checked longer ago than
+     * {@link LocalConstants#CALENDAR_MAX_AGE}, or than
+     * {@link LocalConstants#CALENDAR_RECHECK_AGE} if the calendar has no
+     * collections left. A stale calendar that covers the sector is still
+     * shown while that check runs.
+     */
+    public boolean isStale() {
+        List<Collection> list = getCollections();
+        if (list.isEmpty()) {
+            return true;
+        }
+        long age = System.currentTimeMillis() - getLastChecked();
+        if (list.get(list.size() - 1).getDay() < DateDecoder.today()) {
+            return age > LocalConstants.CALENDAR_RECHECK_AGE;
+        }
+        return age > LocalConstants.CALENDAR_MAX_AGE;
+    }
+
+    /**
+     * @return when the feed was last confirmed current: when the calendar
+     * was written, or later if the server reported it unchanged since
+     */
+    private long getLastChecked() {
+        String key = LocalConstants.CacheName.COLLECTIONS_DATA.toString();
+        long checked = CollectionCache.getInstance().lastModified(key);
+        Validators validators = ValidatorCache.getInstance().get(key);
+        return validators == null ? checked : Math.max(checked, validators.getChecked());
     }
 
     public boolean isSet() {
-        return collections != null && !collections.isEmpty();
+        return !getCollections().isEmpty();
+    }
+
+    /**
+     * An immutable version of the calendar, with the collections of one
+     * sector selected.
+     */
+    public static final class Snapshot {
+
+        static final Snapshot EMPTY = new Snapshot(Collections.<Collection>emptyList(), 0);
+        private final List<Collection> calendar;
+        private final int version;
+        private final Sector sector;
+        private final int offset;
+        private final List<Collection> collections;
+
+        private Snapshot(List<Collection> calendar, int version) {
+            this(calendar, version, null, 0, Collections.<Collection>emptyList());
+        }
+
+        private Snapshot(List<Collection> calendar, int version, Sector sector, int offset, List<Collection> collections) {
+            this.calendar = calendar instanceof MappedCollectionList ? calendar : Collections.unmodifiableList(calendar);
+            this.version = version;
+            this.sector = sector;
+            this.offset = offset;
+            this.collections = collections;
+        }
+
+        private Snapshot select(Sector sector) {
+            int from = 0;
+            int to = 0;
+            if (sector != null) {
+                if (calendar instanceof MappedCollectionList) {
+                    int[] range = ((MappedCollectionList) calendar).rangeOf(sector);
+                    from = range[0];
+                    to = range[1];
+                } else {
+                    while (from < calendar.size() && calendar.get(from).getSector() != sector) {
+                        from++;
+                    }
+                    to = from;
+                    while (to < calendar.size() && calendar.get(to).getSector() == sector) {
+                        to++;
+                    }
+                }
+            }
+            return new Snapshot(calendar, version, sector, from, calendar.subList(from, to));
+        }
+
+        /**
+         * @return the number of times the calendar was replaced before this
+         * version
+         */
+        public int getVersion() {
+            return version;
+        }
+
+        public Sector getSector() {
+            return sector;
+        }
+
+        /**
+         * @return the collections of the selected sector, sorted by day
+         */
+        public List<Collection> getCollections() {
+            return collections;
+        }
+
+        public boolean hasCalendar() {
+            return !calendar.isEmpty();
+        }
+
+        /**
+         * @return the index of the first collection of the selected sector on
+         * or after the given day, or the number of collections if there is
+         * none
+         */
+        public int indexOfDay(int day) {
+            int low = 0;
+            int high = collections.size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                int midDay = calendar instanceof MappedCollectionList ? ((MappedCollectionList) calendar).getDay(offset + mid) : collections.get(mid).getDay();
+                if (midDay < day) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
     }
 }
@@ -0,0 +1,31 @@
+/* 
+ * Copyright 2014 Wouter Pinnoo
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.pinnoo.garbagecalendar.data;
+
+/**
+ *
+ * @author Wouter Pinnoo <pinnoo.wouter@gmail.com>
+ */
+public interface DataListener {
+
+    /**
+     * Called on the thread that made the change; listeners that touch the
+     * UI have to post to the main thread themselves.
+     *
+     * @param version the version of the source after the change
+     */
+    public void onDataChanged(DataContainer source, int version);
+}
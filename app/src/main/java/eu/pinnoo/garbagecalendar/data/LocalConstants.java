@@ -30,6 +30,8 @@ public class LocalConstants {
     public static final String CALENDAR_URL = "https://raw.githubusercontent.com/wpinnoo/GarbageCalendar/master/extra/IvagoOphaalkalender2015.json";
     public static final String STREETS_URL = "https://raw.githubusercontent.com/wpinnoo/GarbageCalendar/master/extra/IVAGO-Stratenlijst.json";
     public static final String LOG = "eu.pinnoo.garbagecalendar";
+    public static final long CALENDAR_MAX_AGE = 7 * 24 * 60 * 60 * 1000L;
+    public static final long CALENDAR_RECHECK_AGE = 24 * 60 * 60 * 1000L;
 
     public enum DateFormatType {
 
@@ -54,7 +56,8 @@ public class LocalConstants {
         COLLECTIONS_DATA("collectionsdata"),
         USER_DATA("userdata"),
         ADDRESS_DATA("addressdata"),
-        COL_REFRESH_NEEDED("colrefreshneeded"),
+        VALIDATORS("validators"),
+        STAGING("staging"),
         VERSION("eu.pinnoo.garbagecalendar.version");
         private String s;
 
@@ -16,24 +16,87 @@
 package eu.pinnoo.garbagecalendar.data;
 
 import java.io.Serializable;
+import java.util.HashMap;
 
 /**
+ * Sectors are interned: {@link #valueOf(String)} returns one shared instance
+ * per distinct sector, so sectors can be compared by reference.
  *
  * @author Wouter Pinnoo <pinnoo.wouter@gmail.com>
  */
-public class Sector implements Serializable {
+public final class Sector implements Serializable {
 
     private static final long serialVersionUID = -843402748713889036L;
-    private AreaType type;
-    private String code;
+    /**
+     * The shared sectors by their spelling in the feeds, and by themselves:
+     * "L11" and "l11" are spelled differently, but are the same sector.
+     */
+    private static final HashMap<String, Sector> SPELLINGS = new HashMap<String, Sector>();
+    private static final HashMap<Sector, Sector> SHARED = new HashMap<Sector, Sector>();
+    private final AreaType type;
+    private final String code;
 
-    public Sector(AreaType type, String code) {
+    private Sector(AreaType type, String code) {
         this.type = type;
         this.code = code;
     }
 
+    /**
+     * Returns the shared sector for a code as it is spelled in the feeds, e.g.
+     * "L11", "v24" or "DESTELBERGEN".
+     */
+    public static Sector valueOf(String str) {
+        if (str == null) {
+            str = "";
+        }
+        synchronized (SHARED) {
+            Sector sector = SPELLINGS.get(str);
+            if (sector == null) {
+                sector = intern(decode(str));
+                SPELLINGS.put(str, sector);
+            }
+            return sector;
+        }
+    }
+
+    private static Sector decode(String str) {
+        if (str.length() == 3 && isDigit(str.charAt(1)) && isDigit(str.charAt(2))) {
+            switch (str.charAt(0)) {
+                case 'L':
+                case 'l':
+                    return new Sector(AreaType.L, str.substring(1));
+                case 'V':
+                case 'v':
+                    return new Sector(AreaType.V, str.substring(1));
+            }
+        }
+        return new Sector(AreaType.CITY, str);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static Sector intern(Sector sector) {
+        synchronized (SHARED) {
+            Sector shared = SHARED.get(sector);
+            if (shared == null) {
+                SHARED.put(sector, sector);
+                shared = sector;
+            }
+            return shared;
+        }
+    }
+
+    private Object readResolve() {
+        return intern(this);
+    }
+
     @Override
     public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
         if (o instanceof Sector) {
             Sector s = (Sector) o;
             return s.getCode().equals(getCode())
@@ -55,23 +118,11 @@ public class Sector implements Serializable {
         return type.toString() + code;
     }
 
-    public Sector(String str) {
-        if (str.matches("[LlVv][0-9][0-9]")) {
-            switch (str.charAt(0)) {
-                case 'L':
-                    type = AreaType.L;
-                    break;
-                case 'V':
-                    type = AreaType.V;
-                    break;
-                default:
-                    type = AreaType.NONE;
-            }
-            code = str.substring(1);
-        } else {
-            type = AreaType.CITY;
-            code = str;
-        }
+    /**
+     * @return the code of this sector as it is spelled in the feeds
+     */
+    public String getRawCode() {
+        return type == AreaType.CITY ? code : type.toString() + code;
     }
 
     public AreaType getType() {
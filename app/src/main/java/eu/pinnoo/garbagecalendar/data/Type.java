@@ -18,6 +18,8 @@ package eu.pinnoo.garbagecalendar.data;
 import android.content.Context;
 import android.content.res.Resources;
 
+import java.util.ArrayList;
+
 /**
  *
  * @author Wouter Pinnoo <pinnoo.wouter@gmail.com>
@@ -32,18 +34,53 @@ public enum Type {
     KERSTBOOM("kerst", true),
     GROF("grof", true),
     NONE("none", false);
+    public static final int NORMAL_MASK;
+    public static final int EXTRA_MASK;
     private String strValue;
     private boolean isExtraType;
+    private final int mask;
+
+    static {
+        int normal = 0;
+        int extra = 0;
+        for (Type t : values()) {
+            if (t.isExtraType) {
+                extra |= t.mask;
+            } else {
+                normal |= t.mask;
+            }
+        }
+        NORMAL_MASK = normal;
+        EXTRA_MASK = extra;
+    }
 
     private Type(String strValue, boolean isExtraType) {
         this.strValue = strValue;
         this.isExtraType = isExtraType;
+        this.mask = 1 << ordinal();
     }
     
     public boolean isExtraType(){
         return isExtraType;
     }
 
+    /**
+     * @return the bit of this type in a type mask
+     */
+    public final int getMask() {
+        return mask;
+    }
+
+    public static ArrayList<Type> fromMask(int mask) {
+        ArrayList<Type> types = new ArrayList<Type>(Integer.bitCount(mask));
+        for (Type t : values()) {
+            if ((mask & t.mask) != 0) {
+                types.add(t);
+            }
+        }
+        return types;
+    }
+
     public final String shortStrValue(Context c) {
         Resources res = c.getResources();
         return res.getString(res.getIdentifier(strValue + "_short", "string", c.getPackageName()));
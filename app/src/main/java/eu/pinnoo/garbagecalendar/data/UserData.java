@@ -24,8 +24,9 @@ import eu.pinnoo.garbagecalendar.data.caches.UserAddressCache;
 public class UserData implements DataContainer {
 
     private static final UserData instance = new UserData();
-    private Address address;
-    private boolean isChanged = false;
+    private volatile Address address;
+    private volatile int version = 0;
+    private final ChangeNotifier notifier = new ChangeNotifier();
 
     private UserData() {
     }
@@ -53,18 +54,29 @@ public class UserData implements DataContainer {
     }
 
     public void setAddress(Address address) {
-        if (this.address != address) {
+        int changed;
+        synchronized (this) {
+            if (this.address == address) {
+                return;
+            }
             this.address = address;
-            this.isChanged = true;
+            changed = ++version;
+            // written right away: unlike the datasets, the choice of the user
+            // cannot be downloaded again if the process dies before a
+            // background write
             UserAddressCache.getInstance().put(LocalConstants.CacheName.USER_DATA.toString(), address);
         }
+        notifier.fire(this, changed);
     }
 
-    public boolean isChanged() {
-        return isChanged;
+    /**
+     * @return the number of times the address was changed
+     */
+    public int getVersion() {
+        return version;
     }
 
-    public void changeCommitted() {
-        isChanged = false;
+    public ChangeNotifier getNotifier() {
+        return notifier;
     }
 }
@@ -22,6 +22,7 @@ import java.util.ArrayList;
 
 import eu.pinnoo.garbagecalendar.data.Address;
 import eu.pinnoo.garbagecalendar.data.LocalConstants;
+import eu.pinnoo.garbagecalendar.data.util.AddressComparator;
 
 /**
  *
@@ -32,12 +33,12 @@ public class AddressCache extends Cache<ArrayList<Address>> {
     private static volatile AddressCache instance;
 
     private AddressCache(File dir) {
-        super(dir);
+        super(dir, new AddressListCodec(), DEFAULT_MEMORY_ENTRIES, true);
     }
 
     public static void initialize(Context context) {
         if (instance == null) {
-            File dir = new File(context.getCacheDir(), LocalConstants.CacheName.ADDRESS_DATA.toString());
+            File dir = getDirectory(context, LocalConstants.CacheName.ADDRESS_DATA);
             instance = new AddressCache(dir);
         }
     }
@@ -46,6 +47,18 @@ public class AddressCache extends Cache<ArrayList<Address>> {
         return instance;
     }
 
+    /**
+     * Older versions stored the list in the order of the feed; it is sorted,
+     * as the current format is, and stored again.
+     */
+    @Override
+    protected ArrayList<Address> upgrade(String key, ArrayList<Address> value) {
+        ArrayList<Address> sorted = new ArrayList<Address>(value);
+        AddressComparator.sort(sorted);
+        putBehind(key, sorted);
+        return sorted;
+    }
+
     public boolean isSet() {
         return instance != null;
     }
@@ -0,0 +1,54 @@
+/* 
+ * Copyright 2014 Wouter Pinnoo
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.pinnoo.garbagecalendar.data.caches;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.Collections;
+
+import eu.pinnoo.garbagecalendar.data.Address;
+
+/**
+ * Binary format of a single address, laid out as a list of one.
+ *
+ * @author Wouter Pinnoo <pinnoo.wouter@gmail.com>
+ */
+public class AddressCodec extends BinaryCodec<Address> {
+
+    public static final int FORMAT = 2;
+    public static final int VERSION = 1;
+
+    public AddressCodec() {
+        super(FORMAT, VERSION);
+    }
+
+    @Override
+    protected void writeBody(Address value, DataOutputStream out) throws IOException {
+        AddressListCodec.writeAddresses(Collections.singletonList(value), out);
+    }
+
+    @Override
+    protected Address readBody(DataInputStream in) throws IOException {
+        ArrayList<Address> list = AddressListCodec.readAddresses(in);
+        if (list.size() != 1) {
+            throw new StreamCorruptedException("Expected a single address");
+        }
+        return list.get(0);
+    }
+}
@@ -0,0 +1,103 @@
+/* 
+ * Copyright 2014 Wouter Pinnoo
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.pinnoo.garbagecalendar.data.caches;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.List;
+
+import eu.pinnoo.garbagecalendar.data.Address;
+import eu.pinnoo.garbagecalendar.data.Sector;
+
+/**
+ * Binary format of a list of addresses: the record count, a string table
+ * and then one fixed-width record of nine ints per address.
+ *
+ * @author Wouter Pinnoo <pinnoo.wouter@gmail.com>
+ */
+public class AddressListCodec extends BinaryCodec<ArrayList<Address>> {
+
+    public static final int FORMAT = 1;
+    /**
+     * Version 2 stores the list sorted by {@link eu.pinnoo.garbagecalendar.data.util.AddressComparator}.
+     */
+    public static final int VERSION = 2;
+
+    public AddressListCodec() {
+        super(FORMAT, VERSION);
+    }
+
+    @Override
+    protected void writeBody(ArrayList<Address> value, DataOutputStream out) throws IOException {
+        writeAddresses(value, out);
+    }
+
+    @Override
+    protected ArrayList<Address> readBody(DataInputStream in) throws IOException {
+        return readAddresses(in);
+    }
+
+    static void writeAddresses(List<Address> list, DataOutputStream out) throws IOException {
+        StringTable table = new StringTable();
+        int[] ids = new int[list.size() * 4];
+        for (int i = 0; i < list.size(); i++) {
+            Address a = list.get(i);
+            ids[i * 4] = table.add(a.getStreetname());
+            ids[i * 4 + 1] = table.add(a.getCode());
+            ids[i * 4 + 2] = table.add(a.getCity());
+            ids[i * 4 + 3] = table.add(a.getSector().getRawCode());
+        }
+        out.writeInt(list.size());
+        table.write(out);
+        for (int i = 0; i < list.size(); i++) {
+            Address a = list.get(i);
+            out.writeInt(ids[i * 4]);
+            out.writeInt(ids[i * 4 + 1]);
+            out.writeInt(a.getNrOddBegin());
+            out.writeInt(a.getNrOddEnd());
+            out.writeInt(a.getNrEvenBegin());
+            out.writeInt(a.getNrEvenEnd());
+            out.writeInt(a.getZipcode());
+            out.writeInt(ids[i * 4 + 2]);
+            out.writeInt(ids[i * 4 + 3]);
+        }
+    }
+
+    static ArrayList<Address> readAddresses(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            throw new StreamCorruptedException("Negative record count");
+        }
+        String[] strings = StringTable.read(in);
+        ArrayList<Address> list = new ArrayList<Address>(size);
+        for (int i = 0; i < size; i++) {
+            String streetname = StringTable.get(strings, in.readInt());
+            String code = StringTable.get(strings, in.readInt());
+            int nrOddBegin = in.readInt();
+            int nrOddEnd = in.readInt();
+            int nrEvenBegin = in.readInt();
+            int nrEvenEnd = in.readInt();
+            int zipcode = in.readInt();
+            String city = StringTable.get(strings, in.readInt());
+            Sector sector = Sector.valueOf(StringTable.get(strings, in.readInt()));
+            list.add(new Address(streetname, code, nrOddBegin, nrOddEnd, nrEvenBegin, nrEvenEnd, zipcode, city, sector));
+        }
+        return list;
+    }
+}
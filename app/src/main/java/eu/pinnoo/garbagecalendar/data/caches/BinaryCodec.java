@@ -0,0 +1,120 @@
+/* 
+ * Copyright 2014 Wouter Pinnoo
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.pinnoo.garbagecalendar.data.caches;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Base class of the hand-written cache formats. Every file starts with a
+ * header of a magic number, a format id and a format version; a file with
+ * another header is rejected, so the {@link Cache} can fall back to another
+ * codec or drop it.
+ *
+ * @author Wouter Pinnoo <pinnoo.wouter@gmail.com>
+ */
+public abstract class BinaryCodec<T> implements Codec<T> {
+
+    public static final int MAGIC = 0x47434331;
+    public static final int HEADER_SIZE = 6;
+    private final int format;
+    private final int version;
+
+    protected BinaryCodec(int format, int version) {
+        this.format = format;
+        this.version = version;
+    }
+
+    public final void write(T value, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeByte(format);
+        data.writeByte(version);
+        writeBody(value, data);
+        data.flush();
+    }
+
+    public final T read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC || data.readUnsignedByte() != format || data.readUnsignedByte() != version) {
+            throw new StreamCorruptedException("Unknown cache format");
+        }
+        return readBody(data);
+    }
+
+    protected abstract void writeBody(T value, DataOutputStream out) throws IOException;
+
+    protected abstract T readBody(DataInputStream in) throws IOException;
+
+    /**
+     * Deduplicated strings of a file, written once before the records, which
+     * refer to them by index.
+     */
+    protected static class StringTable {
+
+        public static final int NULL = -1;
+        private final HashMap<String, Integer> ids = new HashMap<String, Integer>();
+        private final ArrayList<String> strings = new ArrayList<String>();
+
+        public int add(String str) {
+            if (str == null) {
+                return NULL;
+            }
+            Integer id = ids.get(str);
+            if (id == null) {
+                id = strings.size();
+                ids.put(str, id);
+                strings.add(str);
+            }
+            return id;
+        }
+
+        public void write(DataOutputStream out) throws IOException {
+            out.writeInt(strings.size());
+            for (String str : strings) {
+                out.writeUTF(str);
+            }
+        }
+
+        public static String[] read(DataInputStream in) throws IOException {
+            int size = in.readInt();
+            if (size < 0) {
+                throw new StreamCorruptedException("Negative string table size");
+            }
+            String[] strings = new String[size];
+            for (int i = 0; i < size; i++) {
+                strings[i] = in.readUTF();
+            }
+            return strings;
+        }
+
+        public static String get(String[] strings, int id) throws IOException {
+            if (id == NULL) {
+                return null;
+            }
+            if (id < 0 || id >= strings.length) {
+                throw new StreamCorruptedException("Invalid string id " + id);
+            }
+            return strings[id];
+        }
+    }
+}
@@ -15,19 +15,34 @@
  */
 package eu.pinnoo.garbagecalendar.data.caches;
 
+import android.content.Context;
 import android.util.Log;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.lang.ref.SoftReference;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import eu.pinnoo.garbagecalendar.data.LocalConstants;
 
@@ -37,9 +52,55 @@ import eu.pinnoo.garbagecalendar.data.LocalConstants;
  */
 public class Cache<T extends Serializable> {
 
+    public static final int DEFAULT_MEMORY_ENTRIES = 4;
+    private static final String TEMP_SUFFIX = ".tmp";
+    /**
+     * Queued in place of a value when an entry is invalidated: the file is
+     * deleted on the writer thread, and until then the entry reads as
+     * missing.
+     */
+    private static final Object TOMBSTONE = new Object();
+    private static final ExecutorService writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "cache-writer");
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
     private File dir;
+    private final Codec<T> codec;
+    private final Codec<T> fallback;
+    private final boolean compressed;
+    private final LinkedHashMap<String, MemoryEntry<T>> memory;
+    private final HashMap<String, Object> pending = new HashMap<String, Object>();
+    private final Object writeLock = new Object();
+    private int hits = 0;
+    private int misses = 0;
+    private long loadTime = 0;
 
     public Cache(File dir) {
+        this(dir, new SerializableCodec<T>());
+    }
+
+    public Cache(File dir, Codec<T> codec) {
+        this(dir, codec, DEFAULT_MEMORY_ENTRIES);
+    }
+
+    /**
+     * @param codec the codec used to write entries; entries that it does not
+     * recognize are read with Java serialization
+     * @param memoryEntries the maximum number of entries kept in memory
+     */
+    public Cache(File dir, Codec<T> codec, final int memoryEntries) {
+        this(dir, codec, memoryEntries, false);
+    }
+
+    /**
+     * @param compressed whether entries are written gzipped; compressed and
+     * uncompressed entries are both read, whatever this setting
+     */
+    public Cache(File dir, Codec<T> codec, final int memoryEntries, boolean compressed) {
         if (!dir.exists()) {
             boolean mkdirs = dir.mkdirs();
             if (!mkdirs) {
@@ -47,53 +108,315 @@ public class Cache<T extends Serializable> {
             }
         }
         this.dir = dir;
+        this.codec = codec;
+        this.compressed = compressed;
+        this.fallback = codec instanceof SerializableCodec ? null : new SerializableCodec<T>();
+        this.memory = new LinkedHashMap<String, MemoryEntry<T>>(memoryEntries + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, MemoryEntry<T>> eldest) {
+                return size() > memoryEntries;
+            }
+        };
     }
 
+    /**
+     * Returns the value for a key, from memory if the file did not change
+     * since it was last read or written, from disk otherwise. The value is
+     * shared with every other caller and with the writer thread, so it must
+     * be treated as read-only: callers publish it behind an unmodifiable
+     * view, and cached types have no setters.
+     */
     public T get(String key) {
+        T queued = getPending(key);
+        if (queued != null) {
+            return queued;
+        }
+        if (isDeleted(key)) {
+            return null;
+        }
+        File file = new File(dir, key);
+        long lastModified = file.lastModified();
+        long length = file.length();
+        synchronized (memory) {
+            MemoryEntry<T> entry = memory.get(key);
+            if (entry != null && entry.lastModified == lastModified && entry.length == length) {
+                T value = entry.value.get();
+                if (value != null) {
+                    hits++;
+                    return value;
+                }
+            }
+            misses++;
+        }
+        long start = System.currentTimeMillis();
+        T value = load(key);
+        synchronized (memory) {
+            loadTime += System.currentTimeMillis() - start;
+        }
+        if (value != null) {
+            remember(key, value, lastModified, length);
+        }
+        return value;
+    }
+
+    private T load(String key) {
         T value = null;
         try {
             if (exists(key)) {
-                ObjectInputStream stream = new ObjectInputStream(new FileInputStream(new File(dir, key)));
-                value = (T) stream.readObject();
-                stream.close();
+                InputStream stream = new BufferedInputStream(new FileInputStream(new File(dir, key)));
+                try {
+                    if (isGzipped(stream)) {
+                        stream = new BufferedInputStream(new GZIPInputStream(stream));
+                    }
+                    stream.mark(BinaryCodec.HEADER_SIZE);
+                    value = codec.read(stream);
+                } catch (StreamCorruptedException ex) {
+                    if (fallback == null) {
+                        throw ex;
+                    }
+                    stream.reset();
+                    value = readFallback(key, stream);
+                } finally {
+                    stream.close();
+                }
             }
         } catch (IOException ex) {
             Logger.getLogger(Cache.class.getName()).log(Level.SEVERE, null, ex);
         } catch (ClassCastException ex) {
             Logger.getLogger(Cache.class.getName()).log(Level.SEVERE, null, ex);
-        } catch (ClassNotFoundException ex) {
-            Logger.getLogger(Cache.class.getName()).log(Level.SEVERE, null, ex);
         } finally {
             return value;
         }
     }
 
+    /**
+     * Reads an entry written with Java serialization. An entry whose classes
+     * changed since it was written, like the collection lists of versions
+     * before the day numbers, is a cache miss and is dropped.
+     */
+    private T readFallback(String key, InputStream stream) throws IOException {
+        T value;
+        try {
+            value = fallback.read(stream);
+        } catch (InvalidClassException ex) {
+            Log.d(LocalConstants.LOG, "Dropping outdated cache entry " + key + ": " + ex.getMessage());
+            invalidate(key);
+            return null;
+        }
+        return value == null ? null : upgrade(key, value);
+    }
+
+    /**
+     * Called for an entry that was read with Java serialization, i.e. that
+     * was written by an older version of the app, to bring it up to what the
+     * codec writes.
+     *
+     * @return the value to use instead
+     */
+    protected T upgrade(String key, T value) {
+        return value;
+    }
+
+    private static boolean isGzipped(InputStream stream) throws IOException {
+        stream.mark(2);
+        int magic = stream.read() | (stream.read() << 8);
+        stream.reset();
+        return magic == GZIPInputStream.GZIP_MAGIC;
+    }
+
+    /**
+     * Writes an entry. It is written to a temporary file that then replaces
+     * the entry, so a reader or a crash never sees it half written, and a
+     * reader that has the previous file open keeps reading that one.
+     */
     public void put(String key, T value) {
+        synchronized (writeLock) {
+            synchronized (pending) {
+                pending.remove(key);
+            }
+            write(key, value);
+        }
+    }
+
+    private void write(String key, T value) {
+        File file = new File(dir, key);
+        File temp = new File(dir, key + TEMP_SUFFIX);
         try {
-            ObjectOutputStream stream = new ObjectOutputStream(new FileOutputStream(new File(dir, key)));
-            stream.writeObject(value);
-            stream.close();
+            OutputStream stream = new BufferedOutputStream(new FileOutputStream(temp));
+            if (compressed) {
+                stream = new GZIPOutputStream(stream);
+            }
+            try {
+                codec.write(value, stream);
+            } finally {
+                stream.close();
+            }
+            if (!temp.renameTo(file)) {
+                throw new IOException("Could not replace " + file);
+            }
+            remember(key, value, file.lastModified(), file.length());
         } catch (IOException ex) {
+            forget(key);
+            if (temp.exists() && !temp.delete()) {
+                Log.e(LocalConstants.LOG, "Error deleting file");
+            }
             Logger.getLogger(Cache.class.getName()).log(Level.SEVERE, null, ex);
         }
     }
 
+    /**
+     * Queues an entry to be written in the background. Until it is written,
+     * {@link #get} returns it from memory. When an entry is queued again
+     * before it was written, only the latest value is written.
+     */
+    public void putBehind(String key, T value) {
+        enqueue(key, value);
+    }
+
+    private void enqueue(final String key, Object value) {
+        boolean queued;
+        synchronized (pending) {
+            queued = pending.put(key, value) != null;
+        }
+        if (!queued) {
+            writer.execute(new Runnable() {
+                public void run() {
+                    writeBehind(key);
+                }
+            });
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeBehind(String key) {
+        synchronized (writeLock) {
+            Object value;
+            synchronized (pending) {
+                value = pending.get(key);
+            }
+            while (value != null) {
+                if (value == TOMBSTONE) {
+                    delete(key);
+                } else {
+                    write(key, (T) value);
+                }
+                synchronized (pending) {
+                    if (pending.get(key) == value) {
+                        pending.remove(key);
+                        value = null;
+                    } else {
+                        value = pending.get(key);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits until every entry queued with {@link #putBehind}, by any cache,
+     * has been written, and every invalidated entry has been deleted. The
+     * writer thread does not keep the process alive, so the activities call
+     * this when they stop, and the widgets when an update is done.
+     */
+    public static void flush() {
+        try {
+            writer.submit(new Runnable() {
+                public void run() {
+                }
+            }).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            Logger.getLogger(Cache.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    /**
+     * @return the value queued for the key that is not written yet, if any
+     */
+    @SuppressWarnings("unchecked")
+    protected T getPending(String key) {
+        synchronized (pending) {
+            Object value = pending.get(key);
+            return value == TOMBSTONE ? null : (T) value;
+        }
+    }
+
+    /**
+     * @return whether the entry was invalidated, but its file is not deleted
+     * yet
+     */
+    private boolean isDeleted(String key) {
+        synchronized (pending) {
+            return pending.get(key) == TOMBSTONE;
+        }
+    }
+
+    private void remember(String key, T value, long lastModified, long length) {
+        synchronized (memory) {
+            memory.put(key, new MemoryEntry<T>(value, lastModified, length));
+        }
+    }
+
+    private void forget(String key) {
+        synchronized (memory) {
+            memory.remove(key);
+        }
+    }
+
+    public int getHits() {
+        synchronized (memory) {
+            return hits;
+        }
+    }
+
+    public int getMisses() {
+        synchronized (memory) {
+            return misses;
+        }
+    }
+
+    /**
+     * @return the total time spent reading entries from disk, in milliseconds
+     */
+    public long getLoadTime() {
+        synchronized (memory) {
+            return loadTime;
+        }
+    }
+
     public boolean isSet(String key) {
         File cached = new File(dir, key);
-        return cached.length() > 0;
+        return getPending(key) != null || (!isDeleted(key) && cached.length() > 0);
+    }
+
+    /**
+     * @return the number of bytes the entry takes on disk
+     */
+    public long length(String key) {
+        return new File(dir, key).length();
     }
 
     public long lastModified(String key) {
+        if (getPending(key) != null) {
+            return System.currentTimeMillis();
+        }
         File cached = new File(dir, key);
-        if (cached.exists()) {
+        if (!isDeleted(key) && cached.exists()) {
             return cached.lastModified();
         }
         return -1;
     }
 
+    /**
+     * Returns every entry, shared like the values of {@link #get}.
+     */
     public List<T> getAll() {
         List<T> cached = new ArrayList<T>();
         for (File f : dir.listFiles()) {
+            if (f.getName().endsWith(TEMP_SUFFIX)) {
+                continue;
+            }
             T item = get(f.getName());
             if (item != null) {
                 cached.add(item);
@@ -102,7 +425,17 @@ public class Cache<T extends Serializable> {
         return cached;
     }
 
+    /**
+     * Drops an entry. It reads as missing right away; its file is deleted in
+     * the background, after any write of it that is already under way.
+     */
     public void invalidate(String key) {
+        forget(key);
+        enqueue(key, TOMBSTONE);
+    }
+
+    private void delete(String key) {
+        forget(key);
         File cached = new File(dir, key);
         if (cached.exists()) {
             boolean deleted = cached.delete();
@@ -112,16 +445,73 @@ public class Cache<T extends Serializable> {
         }
     }
 
+    /**
+     * Moves an entry written at another location, e.g. by an older version
+     * of the app, to the given key. An existing entry for the key wins.
+     */
+    public void migrate(File legacy, String key) {
+        if (!legacy.exists()) {
+            return;
+        }
+        if (exists(key) || !legacy.renameTo(new File(dir, key))) {
+            boolean deleted = legacy.delete();
+            if (!deleted) {
+                Log.e(LocalConstants.LOG, "Error deleting file");
+            }
+        }
+    }
+
+    /**
+     * @return the directory of the given namespace; every cache owns one
+     */
+    protected static File getDirectory(Context context, LocalConstants.CacheName namespace) {
+        return new File(context.getCacheDir(), namespace.toString());
+    }
+
+    protected File getFile(String key) {
+        return new File(dir, key);
+    }
+
     public boolean exists(String key) {
-        return new File(dir, key).exists();
+        return getPending(key) != null || (!isDeleted(key) && new File(dir, key).exists());
     }
 
+    /**
+     * Invalidates every entry.
+     */
     public void clear() {
+        ArrayList<String> keys;
+        synchronized (pending) {
+            keys = new ArrayList<String>(pending.keySet());
+        }
         for (File f : dir.listFiles()) {
-            boolean deleted = f.delete();
-            if (!deleted) {
-                Log.e(LocalConstants.LOG, "Error deleting file");
+            if (!f.getName().endsWith(TEMP_SUFFIX)) {
+                keys.add(f.getName());
             }
         }
+        synchronized (memory) {
+            memory.clear();
+        }
+        for (String key : keys) {
+            enqueue(key, TOMBSTONE);
+        }
+    }
+
+    /**
+     * A value kept in memory, valid as long as its file keeps the same
+     * modification time and length. The value is softly referenced, so it is
+     * dropped when memory runs low.
+     */
+    private static class MemoryEntry<T> {
+
+        final SoftReference<T> value;
+        final long lastModified;
+        final long length;
+
+        MemoryEntry(T value, long lastModified, long length) {
+            this.value = new SoftReference<T>(value);
+            this.lastModified = lastModified;
+            this.length = length;
+        }
     }
 }
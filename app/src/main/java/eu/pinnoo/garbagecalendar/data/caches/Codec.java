@@ -0,0 +1,36 @@
+/* 
+ * Copyright 2014 Wouter Pinnoo
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.pinnoo.garbagecalendar.data.caches;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Encodes the values of a {@link Cache} to and from its files.
+ *
+ * @author Wouter Pinnoo <pinnoo.wouter@gmail.com>
+ */
+public interface Codec<T> {
+
+    public void write(T value, OutputStream out) throws IOException;
+
+    /**
+     * @throws java.io.StreamCorruptedException if the stream was not written
+     * by this codec
+     */
+    public T read(InputStream in) throws IOException;
+}
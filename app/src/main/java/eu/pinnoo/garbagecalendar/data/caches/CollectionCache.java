@@ -16,9 +16,12 @@
 package eu.pinnoo.garbagecalendar.data.caches;
 
 import android.content.Context;
+import android.util.Log;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 
 import eu.pinnoo.garbagecalendar.data.Collection;
 import eu.pinnoo.garbagecalendar.data.LocalConstants;
@@ -32,12 +35,12 @@ public class CollectionCache extends Cache<ArrayList<Collection>> {
     private static volatile CollectionCache instance;
 
     private CollectionCache(File dir) {
-        super(dir);
+        super(dir, new CollectionListCodec());
     }
 
     public static void initialize(Context context) {
         if (instance == null) {
-            File dir = new File(context.getCacheDir(), LocalConstants.CacheName.COLLECTIONS_DATA.toString());
+            File dir = getDirectory(context, LocalConstants.CacheName.COLLECTIONS_DATA);
             instance = new CollectionCache(dir);
         }
     }
@@ -46,6 +49,27 @@ public class CollectionCache extends Cache<ArrayList<Collection>> {
         return instance;
     }
 
+    /**
+     * Maps a cached list in memory instead of decoding it. Falls back to
+     * {@link #get(String)} for entries that are not in the binary format.
+     * A list that is still queued to be written is returned as is.
+     */
+    public List<Collection> map(String key) {
+        List<Collection> queued = getPending(key);
+        if (queued != null) {
+            return queued;
+        }
+        if (!exists(key)) {
+            return null;
+        }
+        try {
+            return new MappedCollectionList(getFile(key));
+        } catch (IOException ex) {
+            Log.d(LocalConstants.LOG, "Could not map " + key + ": " + ex.getMessage());
+            return get(key);
+        }
+    }
+
     public boolean isSet() {
         return instance != null;
     }
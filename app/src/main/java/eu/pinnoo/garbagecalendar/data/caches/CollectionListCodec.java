@@ -0,0 +1,92 @@
+/* 
+ * Copyright 2014 Wouter Pinnoo
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.pinnoo.garbagecalendar.data.caches;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+
+import eu.pinnoo.garbagecalendar.data.Collection;
+import eu.pinnoo.garbagecalendar.data.Sector;
+
+/**
+ * Binary format of a list of collections: the record count, a string table
+ * of sector codes and then three int columns holding the day numbers, the
+ * type masks and the sector ids of all records.
+ *
+ * @author Wouter Pinnoo <pinnoo.wouter@gmail.com>
+ */
+public class CollectionListCodec extends BinaryCodec<ArrayList<Collection>> {
+
+    public static final int FORMAT = 3;
+    public static final int VERSION = 1;
+
+    public CollectionListCodec() {
+        super(FORMAT, VERSION);
+    }
+
+    @Override
+    protected void writeBody(ArrayList<Collection> value, DataOutputStream out) throws IOException {
+        StringTable table = new StringTable();
+        int[] sectorIds = new int[value.size()];
+        for (int i = 0; i < value.size(); i++) {
+            sectorIds[i] = table.add(value.get(i).getSector().getRawCode());
+        }
+        out.writeInt(value.size());
+        table.write(out);
+        for (int i = 0; i < value.size(); i++) {
+            out.writeInt(value.get(i).getDay());
+        }
+        for (int i = 0; i < value.size(); i++) {
+            out.writeInt(value.get(i).getTypeMask());
+        }
+        for (int i = 0; i < value.size(); i++) {
+            out.writeInt(sectorIds[i]);
+        }
+    }
+
+    @Override
+    protected ArrayList<Collection> readBody(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            throw new StreamCorruptedException("Negative record count");
+        }
+        String[] strings = StringTable.read(in);
+        Sector[] sectors = new Sector[strings.length];
+        for (int i = 0; i < strings.length; i++) {
+            sectors[i] = Sector.valueOf(strings[i]);
+        }
+        int[] days = new int[size];
+        for (int i = 0; i < size; i++) {
+            days[i] = in.readInt();
+        }
+        int[] types = new int[size];
+        for (int i = 0; i < size; i++) {
+            types[i] = in.readInt();
+        }
+        ArrayList<Collection> list = new ArrayList<Collection>(size);
+        for (int i = 0; i < size; i++) {
+            int sectorId = in.readInt();
+            if (sectorId < 0 || sectorId >= sectors.length) {
+                throw new StreamCorruptedException("Invalid sector id " + sectorId);
+            }
+            list.add(new Collection(days[i], types[i], sectors[sectorId]));
+        }
+        return list;
+    }
+}
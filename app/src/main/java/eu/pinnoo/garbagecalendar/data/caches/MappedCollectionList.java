@@ -0,0 +1,156 @@
+/* 
+ * Copyright 2014 Wouter Pinnoo
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.pinnoo.garbagecalendar.data.caches;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StreamCorruptedException;
+import java.nio.BufferUnderflowException;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+import eu.pinnoo.garbagecalendar.data.Collection;
+import eu.pinnoo.garbagecalendar.data.Sector;
+
+/**
+ * Read-only view over a file written by {@link CollectionListCodec}. The file
+ * is memory-mapped and its columns are queried in place; a {@link Collection}
+ * is only created when an element is requested.
+ *
+ * @author Wouter Pinnoo <pinnoo.wouter@gmail.com>
+ */
+public class MappedCollectionList extends AbstractList<Collection> implements RandomAccess {
+
+    private final int size;
+    private final Sector[] sectors;
+    private final IntBuffer days;
+    private final IntBuffer types;
+    private final IntBuffer sectorIds;
+
+    public MappedCollectionList(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        MappedByteBuffer buffer;
+        try {
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        } finally {
+            raf.close();
+        }
+        try {
+            if (buffer.getInt() != BinaryCodec.MAGIC
+                    || (buffer.get() & 0xff) != CollectionListCodec.FORMAT
+                    || (buffer.get() & 0xff) != CollectionListCodec.VERSION) {
+                throw new StreamCorruptedException("Unknown cache format");
+            }
+            size = buffer.getInt();
+            int strings = buffer.getInt();
+            if (size < 0 || strings < 0) {
+                throw new StreamCorruptedException("Negative size");
+            }
+            sectors = new Sector[strings];
+            for (int i = 0; i < strings; i++) {
+                byte[] utf = new byte[buffer.getShort() & 0xffff];
+                buffer.get(utf);
+                sectors[i] = Sector.valueOf(new String(utf, "UTF-8"));
+            }
+            if (buffer.remaining() < size * 12L) {
+                throw new StreamCorruptedException("Truncated cache file");
+            }
+            days = column(buffer, 0);
+            types = column(buffer, 1);
+            sectorIds = column(buffer, 2);
+        } catch (BufferUnderflowException ex) {
+            throw new StreamCorruptedException("Truncated cache file");
+        }
+        checkSectorIds();
+    }
+
+    /**
+     * Makes sure every sector id refers to the string table and the ids are
+     * sorted, as {@link #get} and {@link #rangeOf} rely on, so a corrupt file
+     * is rejected here instead of failing when it is read.
+     */
+    private void checkSectorIds() throws StreamCorruptedException {
+        int previous = 0;
+        for (int i = 0; i < size; i++) {
+            int id = sectorIds.get(i);
+            if (id < previous || id >= sectors.length) {
+                throw new StreamCorruptedException("Invalid sector id " + id + " at " + i);
+            }
+            previous = id;
+        }
+    }
+
+    private IntBuffer column(MappedByteBuffer buffer, int column) {
+        int position = buffer.position();
+        buffer.position(position + column * size * 4);
+        IntBuffer ints = buffer.slice().asIntBuffer();
+        buffer.position(position);
+        ints.limit(size);
+        return ints;
+    }
+
+    @Override
+    public Collection get(int location) {
+        if (location < 0 || location >= size) {
+            throw new IndexOutOfBoundsException("Invalid index " + location + ", size is " + size);
+        }
+        return new Collection(days.get(location), types.get(location), sectors[sectorIds.get(location)]);
+    }
+
+    /**
+     * @return the day of the element at the given position, without creating
+     * a {@link Collection}
+     */
+    public int getDay(int location) {
+        return days.get(location);
+    }
+
+    /**
+     * Returns the range of the given sector as {from, to}. The collections of
+     * a sector are stored next to each other, so the sector ids are sorted.
+     */
+    public int[] rangeOf(Sector sector) {
+        for (int id = 0; id < sectors.length; id++) {
+            if (sectors[id] == sector) {
+                return new int[]{lowerBound(id), lowerBound(id + 1)};
+            }
+        }
+        return new int[]{0, 0};
+    }
+
+    private int lowerBound(int sectorId) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sectorIds.get(mid) < sectorId) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
@@ -31,13 +31,16 @@ public class UserAddressCache extends Cache<Address> {
     private static volatile UserAddressCache instance;
 
     private UserAddressCache(File dir) {
-        super(dir);
+        super(dir, new AddressCodec());
     }
 
     public static void initialize(Context context) {
         if (instance == null) {
-            File dir = new File(context.getCacheDir(), LocalConstants.CacheName.ADDRESS_DATA.toString());
-            instance = new UserAddressCache(dir);
+            File dir = getDirectory(context, LocalConstants.CacheName.USER_DATA);
+            UserAddressCache cache = new UserAddressCache(dir);
+            File legacy = new File(getDirectory(context, LocalConstants.CacheName.ADDRESS_DATA), LocalConstants.CacheName.USER_DATA.toString());
+            cache.migrate(legacy, LocalConstants.CacheName.USER_DATA.toString());
+            instance = cache;
         }
     }
 
@@ -15,29 +15,66 @@
  */
 package eu.pinnoo.garbagecalendar.data.util;
 
-import java.io.Serializable;
-import java.util.Comparator;
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
 
 import eu.pinnoo.garbagecalendar.data.Address;
 
 /**
+ * Orders addresses by street name, city and street code, the way a Dutch
+ * speaker would. Collating is expensive, so {@link #sort} computes the
+ * collation keys of every address once instead of collating on every
+ * comparison.
  *
  * @author Wouter Pinnoo <pinnoo.wouter@gmail.com>
  */
-public class AddressComparator implements Comparator<Address>, Serializable {
+public final class AddressComparator {
 
-    private static final long serialVersionUID = 4394556257114119818L;
+    public static final Locale LOCALE = new Locale("nl", "BE");
 
-    public int compare(Address lhs, Address rhs) {
-        int cmp = lhs.getStreetname().toUpperCase().compareTo(rhs.getStreetname().toUpperCase());
-        if (cmp != 0) {
-            return cmp;
+    private AddressComparator() {
+    }
+
+    /**
+     * Sorts a list by street name, city and street code.
+     */
+    public static void sort(List<Address> list) {
+        Collator collator = Collator.getInstance(LOCALE);
+        Keys[] keys = new Keys[list.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = new Keys(list.get(i), collator);
+        }
+        Arrays.sort(keys);
+        for (int i = 0; i < keys.length; i++) {
+            list.set(i, keys[i].address);
         }
-        cmp += lhs.getCity().toUpperCase().compareTo(rhs.getCity().toUpperCase());
-        if (cmp != 0) {
-            return cmp;
+    }
+
+    private static class Keys implements Comparable<Keys> {
+
+        final Address address;
+        final CollationKey street;
+        final CollationKey city;
+
+        Keys(Address address, Collator collator) {
+            this.address = address;
+            this.street = collator.getCollationKey(address.getStreetname());
+            this.city = collator.getCollationKey(address.getCity());
+        }
+
+        public int compareTo(Keys other) {
+            int cmp = street.compareTo(other.street);
+            if (cmp != 0) {
+                return cmp;
+            }
+            cmp = city.compareTo(other.city);
+            if (cmp != 0) {
+                return cmp;
+            }
+            return address.getCode().compareTo(other.address.getCode());
         }
-        cmp += lhs.getCode().toUpperCase().compareTo(rhs.getCode().toUpperCase());
-        return cmp;
     }
 }
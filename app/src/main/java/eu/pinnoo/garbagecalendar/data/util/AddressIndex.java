@@ -0,0 +1,472 @@
+/* 
+ * Copyright 2014 Wouter Pinnoo
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.pinnoo.garbagecalendar.data.util;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import eu.pinnoo.garbagecalendar.data.Address;
+
+/**
+ * Search index over a list of addresses. The search keys are normalized once
+ * when the index is built; a query is answered with a binary search over the
+ * sorted street names for the addresses whose street starts with it, and a
+ * lookup in the trigram postings for the addresses whose street or city
+ * contains it. While the user types, each query only has to narrow down the
+ * result of the one before.
+ * <p>
+ * When nothing matches, {@link #searchFuzzy} looks for the street names that
+ * are closest to the query, ignoring accents and the usual spelling variants
+ * of Dutch street names.
+ *
+ * @author Wouter Pinnoo <pinnoo.wouter@gmail.com>
+ */
+public class AddressIndex {
+
+    private static final int GRAM = 3;
+    private static final int CANCEL_INTERVAL = 0xff;
+    private static final int FUZZY_MIN_LENGTH = 4;
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
+    private final List<Address> addresses;
+    private final String[] streets;
+    private final String[] cities;
+    private final int[] byStreet;
+    private final HashMap<String, IdList> postings = new HashMap<String, IdList>();
+    /**
+     * The distinct folded street names, and the ids of the addresses in each.
+     */
+    private final String[] names;
+    private final IdList[] members;
+    private final HashMap<String, IdList> namePostings = new HashMap<String, IdList>();
+
+    public AddressIndex(List<Address> addresses) {
+        this.addresses = addresses;
+        int n = addresses.size();
+        streets = new String[n];
+        cities = new String[n];
+        Integer[] order = new Integer[n];
+        HashMap<String, IdList> byName = new HashMap<String, IdList>();
+        ArrayList<String> distinct = new ArrayList<String>();
+        for (int i = 0; i < n; i++) {
+            Address address = addresses.get(i);
+            streets[i] = normalize(address.getStreetname());
+            cities[i] = normalize(address.getCity());
+            order[i] = i;
+            addGrams(postings, streets[i], i);
+            addGrams(postings, cities[i], i);
+            String name = fold(streets[i]);
+            IdList ids = byName.get(name);
+            if (ids == null) {
+                ids = new IdList();
+                byName.put(name, ids);
+                distinct.add(name);
+            }
+            ids.add(i);
+        }
+        names = distinct.toArray(new String[distinct.size()]);
+        members = new IdList[names.length];
+        for (int i = 0; i < names.length; i++) {
+            members[i] = byName.get(names[i]);
+            addGrams(namePostings, pad(names[i]), i);
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer lhs, Integer rhs) {
+                return streets[lhs].compareTo(streets[rhs]);
+            }
+        });
+        byStreet = new int[n];
+        for (int i = 0; i < n; i++) {
+            byStreet[i] = order[i];
+        }
+    }
+
+    /**
+     * @return the string in lower case and without accents
+     */
+    public static String normalize(String str) {
+        if (str == null) {
+            return "";
+        }
+        for (int i = 0; i < str.length(); i++) {
+            if (str.charAt(i) > 0x7f) {
+                str = DIACRITICS.matcher(Normalizer.normalize(str, Normalizer.Form.NFD)).replaceAll("");
+                break;
+            }
+        }
+        return str.toLowerCase();
+    }
+
+    /**
+     * Folds a normalized string onto the spelling that is used for fuzzy
+     * matching: "ij" becomes "y", a doubled vowel becomes a single one and
+     * hyphens become spaces.
+     */
+    static String fold(String str) {
+        StringBuilder sb = new StringBuilder(str.length());
+        char last = 0;
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c == 'i' && i + 1 < str.length() && str.charAt(i + 1) == 'j') {
+                c = 'y';
+                i++;
+            } else if (c == '-') {
+                c = ' ';
+            } else if (c == last && "aeiou".indexOf(c) >= 0) {
+                continue;
+            }
+            sb.append(c);
+            last = c;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Pads the start of a folded name, so its first letters also get grams
+     * of their own.
+     */
+    private static String pad(String name) {
+        return "  " + name;
+    }
+
+    private static void addGrams(HashMap<String, IdList> map, String key, int id) {
+        for (int i = 0; i + GRAM <= key.length(); i++) {
+            String gram = key.substring(i, i + GRAM);
+            IdList list = map.get(gram);
+            if (list == null) {
+                list = new IdList();
+                map.put(gram, list);
+            }
+            list.add(id);
+        }
+    }
+
+    /**
+     * Looks up the addresses whose street name starts with the query, followed
+     * by the ones whose street name or city contains it; both in the order of
+     * the indexed list.
+     *
+     * @param previous the result of an earlier search on this index; if the
+     * query extends its query, only its addresses are considered
+     * @return the result, or null if the search was cancelled
+     */
+    public Result search(String query, Result previous, Cancellation cancellation) {
+        String q = normalize(query);
+        if (previous != null && previous.index == this && !previous.fuzzy
+                && previous.query.length() > 0 && q.startsWith(previous.query)) {
+            return refine(q, previous, cancellation);
+        }
+        int[] full = prefixMatches(q);
+        if (q.length() == 0) {
+            return new Result(this, q, full, new int[0]);
+        }
+        IdList partial = new IdList();
+        if (q.length() < GRAM) {
+            for (int id = 0; id < streets.length; id++) {
+                if (isCancelled(id, cancellation)) {
+                    return null;
+                }
+                if (match(id, q) == Address.PARTIAL_MATCH) {
+                    partial.add(id);
+                }
+            }
+            return new Result(this, q, full, partial.toArray());
+        }
+        IdList candidates = null;
+        for (int i = 0; i + GRAM <= q.length(); i++) {
+            IdList list = postings.get(q.substring(i, i + GRAM));
+            if (list == null) {
+                return new Result(this, q, full, partial.toArray());
+            }
+            if (candidates == null || list.size < candidates.size) {
+                candidates = list;
+            }
+        }
+        for (int i = 0; i < candidates.size; i++) {
+            if (isCancelled(i, cancellation)) {
+                return null;
+            }
+            int id = candidates.ids[i];
+            if (match(id, q) == Address.PARTIAL_MATCH) {
+                partial.add(id);
+            }
+        }
+        return new Result(this, q, full, partial.toArray());
+    }
+
+    /**
+     * Narrows an earlier result down to a longer query. An address that does
+     * not match a query does not match any extension of it either, and one
+     * that only partially matched cannot start to match fully, but a full
+     * match can become a partial one.
+     */
+    private Result refine(String q, Result previous, Cancellation cancellation) {
+        int[] oldFull = previous.full;
+        int[] oldPartial = previous.partial;
+        IdList full = new IdList();
+        IdList partial = new IdList();
+        int i = 0;
+        int j = 0;
+        while (i < oldFull.length || j < oldPartial.length) {
+            if (isCancelled(i + j, cancellation)) {
+                return null;
+            }
+            int id;
+            if (j == oldPartial.length || (i < oldFull.length && oldFull[i] < oldPartial[j])) {
+                id = oldFull[i++];
+            } else {
+                id = oldPartial[j++];
+            }
+            int match = match(id, q);
+            if (match == Address.FULL_MATCH) {
+                full.add(id);
+            } else if (match == Address.PARTIAL_MATCH) {
+                partial.add(id);
+            }
+        }
+        return new Result(this, q, full.toArray(), partial.toArray());
+    }
+
+    /**
+     * Looks up the street names that the query is a misspelled start of:
+     * the names that share enough grams with the query are ranked by the
+     * edit distance between the query and their start. Names are checked in
+     * order of shared grams until the time budget runs out.
+     *
+     * @param budget the time to spend on checking names, in nanoseconds
+     * @return the addresses of the closest names first, or null if the
+     * search was cancelled
+     */
+    public Result searchFuzzy(String query, long budget, Cancellation cancellation) {
+        String q = fold(normalize(query));
+        if (q.length() < FUZZY_MIN_LENGTH) {
+            return new Result(this, q, new int[0], new int[0], true);
+        }
+        long deadline = System.nanoTime() + budget;
+        int maxDistance = q.length() < 6 ? 1 : q.length() < 10 ? 2 : 3;
+        String padded = pad(q);
+        int grams = padded.length() - GRAM + 1;
+        int[] shared = new int[names.length];
+        IdList candidates = new IdList();
+        for (int i = 0; i < grams; i++) {
+            IdList list = namePostings.get(padded.substring(i, i + GRAM));
+            if (list == null) {
+                continue;
+            }
+            for (int j = 0; j < list.size; j++) {
+                if (shared[list.ids[j]]++ == 0) {
+                    candidates.add(list.ids[j]);
+                }
+            }
+        }
+        // every edit destroys at most GRAM of the grams of the query
+        int minShared = Math.max(1, grams - maxDistance * GRAM);
+        Integer[] order = new Integer[candidates.size];
+        int count = 0;
+        for (int i = 0; i < candidates.size; i++) {
+            if (shared[candidates.ids[i]] >= minShared) {
+                order[count++] = candidates.ids[i];
+            }
+        }
+        final int[] sharedGrams = shared;
+        Arrays.sort(order, 0, count, new Comparator<Integer>() {
+            public int compare(Integer lhs, Integer rhs) {
+                return sharedGrams[rhs] - sharedGrams[lhs];
+            }
+        });
+        final int[] distance = new int[names.length];
+        ArrayList<Integer> matches = new ArrayList<Integer>();
+        int[] row = new int[q.length() + maxDistance + 1];
+        int[] previousRow = new int[row.length];
+        for (int i = 0; i < count; i++) {
+            if (isCancelled(i, cancellation)) {
+                return null;
+            }
+            if ((i & 0x1f) == 0 && System.nanoTime() > deadline) {
+                break;
+            }
+            int name = order[i];
+            distance[name] = prefixDistance(q, names[name], maxDistance, previousRow, row);
+            if (distance[name] <= maxDistance) {
+                matches.add(name);
+            }
+        }
+        Collections.sort(matches, new Comparator<Integer>() {
+            public int compare(Integer lhs, Integer rhs) {
+                if (distance[lhs] != distance[rhs]) {
+                    return distance[lhs] - distance[rhs];
+                }
+                if (sharedGrams[lhs] != sharedGrams[rhs]) {
+                    return sharedGrams[rhs] - sharedGrams[lhs];
+                }
+                return members[lhs].ids[0] - members[rhs].ids[0];
+            }
+        });
+        IdList result = new IdList();
+        for (int name : matches) {
+            for (int i = 0; i < members[name].size; i++) {
+                result.add(members[name].ids[i]);
+            }
+        }
+        return new Result(this, q, result.toArray(), new int[0], true);
+    }
+
+    /**
+     * @return the smallest edit distance between the query and a start of
+     * the name, or max + 1 if that is more than max
+     */
+    private static int prefixDistance(String q, String name, int max, int[] previous, int[] row) {
+        int n = Math.min(name.length(), q.length() + max);
+        for (int j = 0; j <= n; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= q.length(); i++) {
+            row[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= n; j++) {
+                int cost = q.charAt(i - 1) == name.charAt(j - 1) ? 0 : 1;
+                row[j] = Math.min(Math.min(row[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, row[j]);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] swap = previous;
+            previous = row;
+            row = swap;
+        }
+        int best = max + 1;
+        for (int j = 0; j <= n; j++) {
+            best = Math.min(best, previous[j]);
+        }
+        return best;
+    }
+
+    private static boolean isCancelled(int step, Cancellation cancellation) {
+        return (step & CANCEL_INTERVAL) == 0 && cancellation != null && cancellation.isCancelled();
+    }
+
+    /**
+     * @return the ids of the addresses whose street name starts with the
+     * normalized query, in ascending order
+     */
+    private int[] prefixMatches(String q) {
+        int low = 0;
+        int high = byStreet.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (streets[byStreet[mid]].compareTo(q) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        int end = low;
+        while (end < byStreet.length && streets[byStreet[end]].startsWith(q)) {
+            end++;
+        }
+        int[] ids = Arrays.copyOfRange(byStreet, low, end);
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    private int match(int id, String q) {
+        if (streets[id].startsWith(q)) {
+            return Address.FULL_MATCH;
+        }
+        if (streets[id].contains(q) || cities[id].contains(q)) {
+            return Address.PARTIAL_MATCH;
+        }
+        return Address.NO_MATCH;
+    }
+
+    public interface Cancellation {
+
+        boolean isCancelled();
+    }
+
+    /**
+     * The addresses that matched a query, as ids into the indexed list.
+     */
+    public static final class Result {
+
+        private final AddressIndex index;
+        private final String query;
+        private final int[] full;
+        private final int[] partial;
+        private final boolean fuzzy;
+
+        private Result(AddressIndex index, String query, int[] full, int[] partial) {
+            this(index, query, full, partial, false);
+        }
+
+        private Result(AddressIndex index, String query, int[] full, int[] partial, boolean fuzzy) {
+            this.index = index;
+            this.query = query;
+            this.full = full;
+            this.partial = partial;
+            this.fuzzy = fuzzy;
+        }
+
+        public int size() {
+            return full.length + partial.length;
+        }
+
+        public boolean isFuzzy() {
+            return fuzzy;
+        }
+
+        public List<Address> getAddresses() {
+            ArrayList<Address> result = new ArrayList<Address>(size());
+            for (int id : full) {
+                result.add(index.addresses.get(id));
+            }
+            for (int id : partial) {
+                result.add(index.addresses.get(id));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * A growing list of ids, in ascending order and without duplicates. Used
+     * as the postings of a gram and the addresses in a street.
+     */
+    private static class IdList {
+
+        int[] ids = new int[4];
+        int size = 0;
+
+        void add(int id) {
+            if (size > 0 && ids[size - 1] == id) {
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(ids, size);
+        }
+    }
+}
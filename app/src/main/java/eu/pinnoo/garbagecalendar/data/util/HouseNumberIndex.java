@@ -0,0 +1,256 @@
+/* 
+ * Copyright 2014 Wouter Pinnoo
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.pinnoo.garbagecalendar.data.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import eu.pinnoo.garbagecalendar.data.Address;
+
+/**
+ * Finds the address, and so the sector, of a house number. Long streets are
+ * split over several addresses that each cover a range of odd and a range of
+ * even numbers; per street these ranges are kept sorted, so a house number
+ * is found with a binary search.
+ *
+ * @author Wouter Pinnoo <pinnoo.wouter@gmail.com>
+ */
+public class HouseNumberIndex {
+
+    private static final Pattern FULL_ADDRESS = Pattern.compile("(.*?[^\\s,])[\\s,]+(\\d+)\\s*[a-zA-Z]?");
+    /**
+     * The streets by folded name and by street code. Street codes are only
+     * unique within a city, so a key can lead to a street in several cities.
+     */
+    private final HashMap<String, List<Street>> streets = new HashMap<String, List<Street>>();
+
+    public HouseNumberIndex(List<Address> addresses) {
+        LinkedHashMap<String, ArrayList<Address>> groups = new LinkedHashMap<String, ArrayList<Address>>();
+        for (Address address : addresses) {
+            String group = address.getCode() + "\n" + AddressIndex.normalize(address.getCity());
+            ArrayList<Address> rows = groups.get(group);
+            if (rows == null) {
+                rows = new ArrayList<Address>();
+                groups.put(group, rows);
+            }
+            rows.add(address);
+        }
+        for (ArrayList<Address> rows : groups.values()) {
+            Street street = new Street(rows);
+            register(key(rows.get(0).getCode()), street);
+            for (Address address : rows) {
+                register(key(address.getStreetname()), street);
+            }
+        }
+    }
+
+    private static String key(String streetname) {
+        return AddressIndex.fold(AddressIndex.normalize(streetname).trim());
+    }
+
+    private void register(String key, Street street) {
+        if (key == null || key.length() == 0) {
+            return;
+        }
+        List<Street> list = streets.get(key);
+        if (list == null) {
+            list = new ArrayList<Street>(1);
+            streets.put(key, list);
+        }
+        if (!list.contains(street)) {
+            list.add(street);
+        }
+    }
+
+    /**
+     * @param street the name or the code of the street
+     * @return the addresses that cover the house number, one for every city
+     * that has a street by that name
+     */
+    public List<Address> resolve(String street, int number) {
+        List<Street> list = streets.get(key(street));
+        if (list == null || number <= 0) {
+            return Collections.emptyList();
+        }
+        ArrayList<Address> result = new ArrayList<Address>(list.size());
+        for (Street s : list) {
+            Address address = s.find(number);
+            if (address != null) {
+                result.add(address);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Resolves a full address as the user would type it, e.g.
+     * "Antwerpsesteenweg 402", "Beekstraat, 30b" or, with the street code,
+     * "2101 5".
+     *
+     * @return the addresses that cover it, or null if the query does not end
+     * with a house number
+     */
+    public List<Address> resolve(String query) {
+        Matcher matcher = FULL_ADDRESS.matcher(query.trim());
+        if (!matcher.matches()) {
+            return null;
+        }
+        try {
+            return resolve(matcher.group(1), Integer.parseInt(matcher.group(2)));
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * The addresses of one street in one city.
+     */
+    private static class Street {
+
+        private final Ranges odd;
+        private final Ranges even;
+        /**
+         * The address that covers the numbers outside of the ranges, if the
+         * street has one without numbers.
+         */
+        private final Address rest;
+
+        Street(List<Address> rows) {
+            ArrayList<Address> oddRows = new ArrayList<Address>();
+            ArrayList<Address> evenRows = new ArrayList<Address>();
+            Address other = null;
+            for (Address address : rows) {
+                boolean hasOdd = address.getNrOddBegin() > 0 || address.getNrOddEnd() > 0;
+                boolean hasEven = address.getNrEvenBegin() > 0 || address.getNrEvenEnd() > 0;
+                if (hasOdd) {
+                    oddRows.add(address);
+                }
+                if (hasEven) {
+                    evenRows.add(address);
+                }
+                if (!hasOdd && !hasEven && other == null) {
+                    other = address;
+                }
+            }
+            odd = new Ranges(oddRows, true);
+            even = new Ranges(evenRows, false);
+            rest = other;
+        }
+
+        Address find(int number) {
+            Address address = (number % 2 == 0 ? even : odd).find(number);
+            return address == null ? rest : address;
+        }
+    }
+
+    /**
+     * Ranges of house numbers of one parity. Ranges can overlap, e.g. an open
+     * range for the whole street next to a range for a few numbers, so they
+     * are cut into segments that do not: every segment starts where a range
+     * starts or ends, and belongs to the range with the highest first number
+     * that covers it.
+     */
+    private static class Ranges {
+
+        /**
+         * The first number of every segment, in ascending order.
+         */
+        private final int[] start;
+        /**
+         * The address of every segment, or null for a gap between ranges.
+         */
+        private final Address[] addresses;
+
+        Ranges(List<Address> rows, final boolean odd) {
+            int n = rows.size();
+            Address[] sorted = rows.toArray(new Address[n]);
+            Arrays.sort(sorted, new Comparator<Address>() {
+                public int compare(Address lhs, Address rhs) {
+                    return begin(lhs, odd) - begin(rhs, odd);
+                }
+            });
+            int[] bounds = new int[n * 2];
+            int count = 0;
+            for (Address address : sorted) {
+                bounds[count++] = begin(address, odd);
+                int end = end(address, odd);
+                if (end != Integer.MAX_VALUE) {
+                    bounds[count++] = end + 1;
+                }
+            }
+            Arrays.sort(bounds, 0, count);
+            int segments = 0;
+            for (int i = 0; i < count; i++) {
+                if (segments == 0 || bounds[i] != bounds[segments - 1]) {
+                    bounds[segments++] = bounds[i];
+                }
+            }
+            start = Arrays.copyOf(bounds, segments);
+            addresses = new Address[segments];
+            // a street has a handful of ranges, so every segment simply
+            // checks them all
+            for (int i = 0; i < segments; i++) {
+                for (int j = n - 1; j >= 0; j--) {
+                    if (begin(sorted[j], odd) <= start[i] && start[i] <= end(sorted[j], odd)) {
+                        addresses[i] = sorted[j];
+                        break;
+                    }
+                }
+            }
+        }
+
+        /**
+         * A range without a first number starts at the beginning of the
+         * street.
+         */
+        private static int begin(Address address, boolean odd) {
+            return Math.max(0, odd ? address.getNrOddBegin() : address.getNrEvenBegin());
+        }
+
+        /**
+         * A range without a last number runs to the end of the street.
+         */
+        private static int end(Address address, boolean odd) {
+            int nr = odd ? address.getNrOddEnd() : address.getNrEvenEnd();
+            return nr <= 0 ? Integer.MAX_VALUE : nr;
+        }
+
+        /**
+         * @return the address of the range with the highest first number
+         * that covers the house number, or null if none covers it
+         */
+        Address find(int number) {
+            int low = 0;
+            int high = start.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (start[mid] <= number) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low == 0 ? null : addresses[low - 1];
+        }
+    }
+}
@@ -32,6 +32,7 @@ import com.google.android.gms.analytics.Tracker;
 import eu.pinnoo.garbagecalendar.GarbageCalenderApplication;
 import eu.pinnoo.garbagecalendar.data.LocalConstants;
 import eu.pinnoo.garbagecalendar.data.caches.AddressCache;
+import eu.pinnoo.garbagecalendar.data.caches.Cache;
 import eu.pinnoo.garbagecalendar.data.caches.CollectionCache;
 import eu.pinnoo.garbagecalendar.data.caches.UserAddressCache;
 
@@ -64,6 +65,16 @@ public abstract class AbstractActivity extends Activity
         t.send(new HitBuilders.AppViewBuilder().build());
     }
 
+    /**
+     * Writes the entries still queued for the caches; the process can be
+     * killed once no activity is visible.
+     */
+    @Override
+    public void onStop() {
+        super.onStop();
+        Cache.flush();
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         switch (item.getItemId()) {
@@ -15,10 +15,7 @@
  */
 package eu.pinnoo.garbagecalendar.ui;
 
-import android.app.Activity;
 import android.app.AlertDialog;
-import android.appwidget.AppWidgetManager;
-import android.content.ComponentName;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.os.Bundle;
@@ -38,21 +35,23 @@ import org.joda.time.DateTime;
 
 import java.util.Calendar;
 import java.util.Date;
-import java.util.Iterator;
 import java.util.List;
 
 import eu.pinnoo.garbagecalendar.R;
 import eu.pinnoo.garbagecalendar.data.AreaType;
 import eu.pinnoo.garbagecalendar.data.Collection;
 import eu.pinnoo.garbagecalendar.data.CollectionsData;
+import eu.pinnoo.garbagecalendar.data.DataContainer;
+import eu.pinnoo.garbagecalendar.data.DataListener;
 import eu.pinnoo.garbagecalendar.data.LocalConstants;
 import eu.pinnoo.garbagecalendar.data.Type;
 import eu.pinnoo.garbagecalendar.data.UserData;
 import eu.pinnoo.garbagecalendar.data.caches.AddressCache;
 import eu.pinnoo.garbagecalendar.data.caches.CollectionCache;
 import eu.pinnoo.garbagecalendar.data.caches.UserAddressCache;
+import eu.pinnoo.garbagecalendar.data.caches.ValidatorCache;
 import eu.pinnoo.garbagecalendar.ui.preferences.PreferenceActivity;
-import eu.pinnoo.garbagecalendar.ui.widget.WidgetProvider;
+import eu.pinnoo.garbagecalendar.util.DateDecoder;
 import eu.pinnoo.garbagecalendar.util.parsers.CalendarParser;
 import eu.pinnoo.garbagecalendar.util.parsers.Parser.Result;
 import eu.pinnoo.garbagecalendar.util.tasks.CacheTask;
@@ -66,6 +65,18 @@ public class CollectionListActivity extends AbstractActivity {
 
     private volatile boolean loading = false;
     private SwipeRefreshLayout swipeContainer;
+    private int renderedUser = -1;
+    private int renderedCalendar = -1;
+    private int renderedDay = DateDecoder.INVALID;
+    private final DataListener listener = new DataListener() {
+        public void onDataChanged(DataContainer source, int version) {
+            runOnUiThread(new Runnable() {
+                public void run() {
+                    refresh();
+                }
+            });
+        }
+    };
 
     @Override
     protected String getActivityName()
@@ -83,6 +94,7 @@ public class CollectionListActivity extends AbstractActivity {
         AddressCache.initialize(this);
         CollectionCache.initialize(this);
         UserAddressCache.initialize(this);
+        ValidatorCache.initialize(this);
 
         clearCachedIfRequired();
 
@@ -103,13 +115,31 @@ public class CollectionListActivity extends AbstractActivity {
     @Override
     public void onResume() {
         super.onResume();
-        if (!loading) {
-            if (getSharedPreferences("PREFERENCE", Activity.MODE_PRIVATE).getBoolean(LocalConstants.CacheName.COL_REFRESH_NEEDED.toString(), true)
-                    || !CollectionsData.getInstance().isSet()) {
-                initializeCacheAndLoadData();
-            } else {
-                createGUI();
-            }
+        UserData.getInstance().getNotifier().addListener(listener);
+        CollectionsData.getInstance().getNotifier().addListener(listener);
+        refresh();
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+        UserData.getInstance().getNotifier().removeListener(listener);
+        CollectionsData.getInstance().getNotifier().removeListener(listener);
+    }
+
+    /**
+     * Brings the list up to date with the data, if it was rendered from an
+     * older version of it. A changed address may need another calendar, a
+     * changed calendar only needs to be rendered again.
+     */
+    private void refresh() {
+        if (loading) {
+            return;
+        }
+        if (renderedUser != UserData.getInstance().getVersion() || !CollectionsData.getInstance().isSet()) {
+            initializeCacheAndLoadData();
+        } else if (renderedCalendar != CollectionsData.getInstance().getVersion() || renderedDay != DateDecoder.today()) {
+            createGUI();
         }
     }
 
@@ -134,12 +164,24 @@ public class CollectionListActivity extends AbstractActivity {
                 loading = false;
                 checkAddress();
             }
-        }.execute(CollectionsData.getInstance(), UserData.getInstance());
+        }.setParallel(true).executeConcurrently(CollectionsData.getInstance(), UserData.getInstance());
     }
 
+    /**
+     * Renders the cached calendar if it covers the user's sector, and only
+     * checks for a newer one in the background; the calendar is only
+     * downloaded up front when there is none to show.
+     */
     public void checkAddress() {
         if (UserData.getInstance().isSet()) {
-            loadCollections(UserData.getInstance().isChanged(), false);
+            if (CollectionsData.getInstance().isSet()) {
+                createGUI();
+                if (CollectionsData.getInstance().isStale()) {
+                    revalidateCollections();
+                }
+            } else {
+                loadCollections(true, false);
+            }
         } else {
             loading = true;
             new AlertDialog.Builder(this)
@@ -189,7 +231,7 @@ public class CollectionListActivity extends AbstractActivity {
                             Toast.makeText(getApplicationContext(), getString(R.string.unknownError), Toast.LENGTH_SHORT).show();
                             break;
                         case NO_INTERNET_CONNECTION:
-                            if (isPullToRefresh) {
+                            if (isPullToRefresh || CollectionsData.getInstance().isSet()) {
                                 Toast.makeText(getApplicationContext(), getString(R.string.needConnection), Toast.LENGTH_SHORT).show();
                             } else {
                                 new AlertDialog.Builder(CollectionListActivity.this)
@@ -206,35 +248,47 @@ public class CollectionListActivity extends AbstractActivity {
                             }
                             break;
                         case SUCCESSFUL:
-                            UserData.getInstance().changeCommitted();
+                        case NOT_MODIFIED:
                             createGUI();
                             break;
                     }
                     swipeContainer.setRefreshing(false);
                     loading = false;
                 }
-            }.execute(new CalendarParser());
+            }.executeConcurrently(new CalendarParser());
         }
     }
 
+    /**
+     * Checks for a newer calendar while the cached one stays on screen. A
+     * newer calendar is rendered by the listener once it is published; when
+     * the check fails, the cached calendar is simply kept.
+     */
+    private void revalidateCollections() {
+        new ParserTask(this) {
+            @Override
+            protected void onPostExecute(Result[] result) {
+                super.onPostExecute(result);
+                Log.d(LocalConstants.LOG, "Revalidated the calendar: " + result[0]);
+            }
+        }.executeConcurrently(new CalendarParser());
+    }
+
     private void createGUI() {
         Log.d(LocalConstants.LOG, "Everything done, creating UI!");
         NowLayout table = (NowLayout) findViewById(R.id.col_table);
         table.removeViews(0, table.getChildCount());
 
-        List<Collection> collections = CollectionsData.getInstance().getCollections();
-        Iterator<Collection> it = collections.iterator();
-        while (it.hasNext()) {
-            Collection col = it.next();
-            Calendar lastDayToBeShown = Calendar.getInstance();
-            lastDayToBeShown.add(Calendar.DATE, -1);
-            if (col.getDate().before(lastDayToBeShown.getTime())) {
-                continue;
-            }
-
-            addTableRow(col);
+        int user = UserData.getInstance().getVersion();
+        CollectionsData.Snapshot snapshot = CollectionsData.getInstance().getSnapshot();
+        List<Collection> collections = snapshot.getCollections();
+        int today = DateDecoder.today();
+        for (int i = snapshot.indexOfDay(today); i < collections.size(); i++) {
+            addTableRow(collections.get(i));
         }
-        updateAllWidgets();
+        renderedUser = user;
+        renderedCalendar = snapshot.getVersion();
+        renderedDay = today;
     }
 
     private String beautifyDate(Date date) {
@@ -338,12 +392,4 @@ public class CollectionListActivity extends AbstractActivity {
                 return super.onOptionsItemSelected(item);
         }
     }
-
-    private void updateAllWidgets() {
-        AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(getApplicationContext());
-        int[] appWidgetIds = appWidgetManager.getAppWidgetIds(new ComponentName(this, WidgetProvider.class));
-        if (appWidgetIds.length > 0) {
-            new WidgetProvider().onUpdate(this, appWidgetManager, appWidgetIds);
-        }
-    }
 }
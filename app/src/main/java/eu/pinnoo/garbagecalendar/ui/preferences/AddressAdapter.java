@@ -20,50 +20,116 @@ import android.graphics.Color;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
+import android.widget.BaseAdapter;
 import android.widget.Filter;
+import android.widget.Filterable;
 import android.widget.SectionIndexer;
 import android.widget.TextView;
 
 import se.emilsjolander.stickylistheaders.StickyListHeadersAdapter;
 
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import eu.pinnoo.garbagecalendar.R;
 import eu.pinnoo.garbagecalendar.data.Address;
+import eu.pinnoo.garbagecalendar.data.util.AddressIndex;
+import eu.pinnoo.garbagecalendar.data.util.HouseNumberIndex;
 
 /**
+ * Shows the sorted address list of an {@link eu.pinnoo.garbagecalendar.data.AddressData}
+ * snapshot, or the result of a search in it. Neither list is copied: the
+ * adapter only switches between them.
  *
  * @author Wouter Pinnoo <pinnoo.wouter@gmail.com>
  */
-public class AddressAdapter extends ArrayAdapter<Address> implements SectionIndexer, StickyListHeadersAdapter {
+public class AddressAdapter extends BaseAdapter implements Filterable, SectionIndexer, StickyListHeadersAdapter {
 
     private Context context;
-    private List<Address> originalValues = new ArrayList<Address>();
-    private static final LinkedHashMap<String, Integer> SECTION_MAP = new LinkedHashMap<String, Integer>();
+    private final List<Address> originalValues;
+    private List<Address> values;
+    private final AddressIndex index;
+    private final HouseNumberIndex houseNumbers;
+    private final AddressFilter filter = new AddressFilter();
+    private final AtomicInteger generation = new AtomicInteger();
+    /**
+     * The latest result of the index, which the next query narrows down if
+     * it extends it. Any result is a valid start for its own query, so it
+     * does not matter which search thread set it.
+     */
+    private volatile AddressIndex.Result last;
+    /**
+     * Time a fuzzy search may take when a query has no matches, in
+     * nanoseconds.
+     */
+    private static final long FUZZY_BUDGET = 5000000;
+    /**
+     * The sections of the full list: the first two letters of the street
+     * names, without accents. A section that comes back further down the
+     * list, because collation ignores punctuation, is not repeated.
+     */
+    private final String[] sections;
+    private final int[] sectionStart;
+    private final int[] sectionOf;
     private LayoutInflater inflater;
 
-    public AddressAdapter(Context context, int textViewResourceId, List<Address> initObjects) {
-        super(context, textViewResourceId, initObjects);
+    /**
+     * @param addresses the sorted addresses, which are shown as they are
+     * @param index the search index of the addresses, in the same order
+     * @param houseNumbers the house number index of the addresses
+     */
+    public AddressAdapter(Context context, List<Address> addresses, AddressIndex index, HouseNumberIndex houseNumbers) {
         this.context = context;
+        this.originalValues = addresses;
+        this.values = addresses;
+        this.index = index;
+        this.houseNumbers = houseNumbers;
 
-        inflater = (LayoutInflater) getContext().getSystemService(Context.LAYOUT_INFLATER_SERVICE);
-        originalValues.addAll(initObjects);
-        int objectsIndex = -1;
-        String previousSection = "";
-        while (++objectsIndex < initObjects.size()) {
-            Address a = initObjects.get(objectsIndex);
-            if (!a.getStreetname().toUpperCase().substring(0, 2).equals(previousSection.toUpperCase())) {
-                previousSection = a.getStreetname().substring(0, 2);
-                SECTION_MAP.put(previousSection, objectsIndex);
+        inflater = (LayoutInflater) context.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
+        ArrayList<String> names = new ArrayList<String>();
+        ArrayList<Integer> starts = new ArrayList<Integer>();
+        HashSet<String> seen = new HashSet<String>();
+        sectionOf = new int[addresses.size()];
+        String previousSection = null;
+        for (int i = 0; i < addresses.size(); i++) {
+            String section = getSection(addresses.get(i));
+            if (!section.equals(previousSection) && seen.add(section)) {
+                names.add(section);
+                starts.add(i);
             }
+            previousSection = section;
+            sectionOf[i] = names.size() - 1;
+        }
+        sections = names.toArray(new String[names.size()]);
+        sectionStart = new int[starts.size()];
+        for (int i = 0; i < sectionStart.length; i++) {
+            sectionStart[i] = starts.get(i);
         }
     }
 
+    private static String getSection(Address address) {
+        String name = AddressIndex.normalize(address.getStreetname());
+        name = name.substring(0, Math.min(2, name.length()));
+        return name.length() == 0 ? name : name.substring(0, 1).toUpperCase() + name.substring(1);
+    }
+
+    @Override
+    public int getCount() {
+        return values.size();
+    }
+
+    @Override
+    public Address getItem(int position) {
+        return values.get(position);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return position;
+    }
+
     @Override
     public View getView(int position, View convertView, ViewGroup parent) {
         View v = convertView;
@@ -93,79 +159,93 @@ public class AddressAdapter extends ArrayAdapter<Address> implements SectionInde
         return v;
     }
 
-    @Override
-    public Filter getFilter() {
-        return new Filter() {
-            @Override
-            protected FilterResults performFiltering(CharSequence charSequence) {
-                FilterResults results = new FilterResults();
-
-                if (charSequence == null || charSequence.length() == 0) {
-                    results.values = originalValues;
-                    results.count = originalValues.size();
-                } else {
-                    ArrayList<Address> filtered = new ArrayList<Address>();
-                    ArrayList<Address> filteredLowPriority = new ArrayList<Address>();
-                    for (Address item : originalValues) {
-                        int match = item.matches(charSequence.toString());
-                        if (match == Address.FULL_MATCH) {
-                            filtered.add(item);
-                        } else if (match == Address.PARTIAL_MATCH) {
-                            filteredLowPriority.add(item);
-                        }
-                    }
-                    for (Address item : filteredLowPriority) {
-                        filtered.add(item);
-                    }
-                    results.values = filtered;
-                    results.count = filtered.size();
-                }
-                return results;
-            }
+    /**
+     * Filters the addresses on a query. A query that arrives while an earlier
+     * one is still being filtered cancels it.
+     */
+    public void filter(String query) {
+        generation.incrementAndGet();
+        getFilter().filter(query);
+    }
 
-            @Override
-            protected void publishResults(CharSequence charSequence, FilterResults filterResults) {
-                clear();
-                addAll((ArrayList<Address>) filterResults.values);
-            }
-        };
+    /**
+     * Looks up the addresses for a query right away, on the calling thread,
+     * without changing what the list shows.
+     */
+    public List<Address> search(String query) {
+        return search(query, null);
     }
 
     /**
-     * addAll is only available in API levels 11+, so here an alternative.
-     *
-     * @param list
+     * @return the addresses for the query: the ones that cover a full
+     * address, else the matching ones, else the closest ones; or null if the
+     * search was cancelled
      */
+    private List<Address> search(String query, AddressIndex.Cancellation cancellation) {
+        if (query == null || query.length() == 0) {
+            last = null;
+            return originalValues;
+        }
+        List<Address> resolved = houseNumbers.resolve(query);
+        if (resolved != null && !resolved.isEmpty()) {
+            return resolved;
+        }
+        AddressIndex.Result result = index.search(query, last, cancellation);
+        if (result != null) {
+            last = result;
+        }
+        if (result != null && result.size() == 0) {
+            result = index.searchFuzzy(query, FUZZY_BUDGET, cancellation);
+        }
+        return result == null ? null : result.getAddresses();
+    }
+
     @Override
-    public void addAll(Collection<? extends Address> list) {
-        Iterator<? extends Address> it = list.iterator();
-        while (it.hasNext()) {
-            add((Address) it.next());
+    public Filter getFilter() {
+        return filter;
+    }
+
+    private class AddressFilter extends Filter {
+
+        @Override
+        protected FilterResults performFiltering(CharSequence charSequence) {
+            FilterResults results = new FilterResults();
+            final int started = generation.get();
+            List<Address> filtered = search(charSequence == null ? null : charSequence.toString(), new AddressIndex.Cancellation() {
+                public boolean isCancelled() {
+                    return generation.get() != started;
+                }
+            });
+            if (filtered != null) {
+                results.values = filtered;
+                results.count = filtered.size();
+            }
+            return results;
+        }
+
+        @Override
+        protected void publishResults(CharSequence charSequence, FilterResults filterResults) {
+            if (filterResults.values == null) {
+                return;
+            }
+            values = (List<Address>) filterResults.values;
+            notifyDataSetChanged();
         }
     }
 
     @Override
     public Object[] getSections() {
-        return getCount() == originalValues.size() ? SECTION_MAP.keySet().toArray() : new Object[0];
+        return values == originalValues ? sections : new Object[0];
     }
 
     @Override
     public int getPositionForSection(int section) {
-        return getCount() == originalValues.size() ? SECTION_MAP.get((String) SECTION_MAP.keySet().toArray()[section]) : 0;
+        return values == originalValues && section < sectionStart.length ? sectionStart[section] : 0;
     }
 
     @Override
     public int getSectionForPosition(int position) {
-        if (getCount() != originalValues.size()) {
-            return 0;
-        }
-        String[] array = (String[]) SECTION_MAP.keySet().toArray(new String[SECTION_MAP.size()]);
-        for (int i = 0; i < array.length; i++) {
-            if (array[i].toUpperCase().equals(getItem(position).getStreetname().toUpperCase().substring(0, 2))) {
-                return i;
-            }
-        }
-        return 0;
+        return values == originalValues ? Math.max(sectionOf[position], 0) : 0;
     }
 
     @Override
@@ -180,9 +260,7 @@ public class AddressAdapter extends ArrayAdapter<Address> implements SectionInde
             holder = (HeaderViewHolder) convertView.getTag();
         }
 
-        String name = getItem(position).getStreetname().substring(0, 2);
-        String headerText = name.substring(0, 1).toUpperCase() + name.substring(1, 2).toLowerCase();
-        holder.text1.setText(headerText);
+        holder.text1.setText(values == originalValues ? sections[sectionOf[position]] : getSection(getItem(position)));
         return convertView;
 
     }
@@ -194,6 +272,8 @@ public class AddressAdapter extends ArrayAdapter<Address> implements SectionInde
 
     @Override
     public long getHeaderId(int position) {
-        return getItem(position).getStreetname().toUpperCase().substring(0, 2).hashCode();
+        // the full list uses the same sections as the fast scroll, so a row
+        // whose prefix came back further down the list stays in its section
+        return values == originalValues ? sectionOf[position] : getSection(getItem(position)).hashCode();
     }
 }
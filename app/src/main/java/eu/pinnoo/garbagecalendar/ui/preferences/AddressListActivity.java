@@ -15,15 +15,13 @@
  */
 package eu.pinnoo.garbagecalendar.ui.preferences;
 
-import android.app.Activity;
 import android.app.AlertDialog;
 import android.app.SearchManager;
 import android.app.SearchableInfo;
-import android.appwidget.AppWidgetManager;
-import android.content.ComponentName;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.os.Bundle;
+import android.os.Handler;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
@@ -34,21 +32,16 @@ import android.widget.ListView;
 import android.widget.SearchView;
 import android.widget.Toast;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 import eu.pinnoo.garbagecalendar.R;
 import eu.pinnoo.garbagecalendar.data.Address;
 import eu.pinnoo.garbagecalendar.data.AddressData;
-import eu.pinnoo.garbagecalendar.data.LocalConstants;
 import eu.pinnoo.garbagecalendar.data.UserData;
 import eu.pinnoo.garbagecalendar.data.caches.AddressCache;
 import eu.pinnoo.garbagecalendar.data.caches.CollectionCache;
 import eu.pinnoo.garbagecalendar.data.caches.UserAddressCache;
-import eu.pinnoo.garbagecalendar.data.util.AddressComparator;
 import eu.pinnoo.garbagecalendar.ui.AbstractActivity;
-import eu.pinnoo.garbagecalendar.ui.widget.WidgetProvider;
 import eu.pinnoo.garbagecalendar.util.parsers.Parser.Result;
 import eu.pinnoo.garbagecalendar.util.parsers.StreetsParser;
 import eu.pinnoo.garbagecalendar.util.tasks.CacheTask;
@@ -61,10 +54,22 @@ import se.emilsjolander.stickylistheaders.StickyListHeadersListView;
  */
 public class AddressListActivity extends AbstractActivity implements SearchView.OnQueryTextListener {
 
-    private List<Address> list;
     private AddressAdapter adapter;
     private StickyListHeadersListView lv;
     private volatile boolean loading = false;
+    /**
+     * Time to wait for the next keystroke before filtering the list.
+     */
+    private static final long FILTER_DELAY = 150;
+    private final Handler handler = new Handler();
+    private String pendingQuery;
+    private final Runnable applyQuery = new Runnable() {
+        public void run() {
+            if (adapter != null) {
+                adapter.filter(pendingQuery);
+            }
+        }
+    };
 
     @Override
     protected String getActivityName()
@@ -95,16 +100,17 @@ public class AddressListActivity extends AbstractActivity implements SearchView.
     @Override
     public void onResume() {
         super.onResume();
-        getSharedPreferences("PREFERENCE", Activity.MODE_PRIVATE)
-                .edit()
-                .putBoolean(LocalConstants.CacheName.COL_REFRESH_NEEDED.toString(), !UserData.getInstance().isSet())
-                .commit();
-
         if (!loading) {
             initializeCacheAndLoadStreets(false, true);
         }
     }
 
+    @Override
+    public void onPause() {
+        super.onPause();
+        handler.removeCallbacks(applyQuery);
+    }
+
     private void initializeCacheAndLoadStreets(boolean force, final boolean requiredRefresh) {
         if (force || !AddressData.getInstance().isSet()) {
             new ParserTask(this, getString(R.string.loadingStreets)) {
@@ -142,12 +148,13 @@ public class AddressListActivity extends AbstractActivity implements SearchView.
                             }
                             break;
                         case SUCCESSFUL:
+                        case NOT_MODIFIED:
                             loadStreets();
                             break;
                     }
                     loading = false;
                 }
-            }.execute(new StreetsParser());
+            }.executeConcurrently(new StreetsParser());
         } else {
             loadStreets();
         }
@@ -169,7 +176,7 @@ public class AddressListActivity extends AbstractActivity implements SearchView.
                         loading = false;
                         fillList();
                     }
-                }.execute(AddressData.getInstance());
+                }.executeConcurrently(AddressData.getInstance());
             }
         } else {
             fillList();
@@ -177,29 +184,18 @@ public class AddressListActivity extends AbstractActivity implements SearchView.
     }
 
     private void fillList() {
-        list = new ArrayList<Address>();
-        list.addAll(AddressData.getInstance().getAddresses());
-        Collections.sort(list, new AddressComparator());
-        adapter = new AddressAdapter(this, R.layout.address_table_row, list);
+        AddressData.Snapshot snapshot = AddressData.getInstance().getSnapshot();
+        adapter = new AddressAdapter(this, snapshot.getAddresses(), snapshot.getIndex(), snapshot.getHouseNumbers());
         lv.setAdapter(adapter);
     }
 
     public void submitAddress(int position) {
-        getSharedPreferences("PREFERENCE", Activity.MODE_PRIVATE)
-                .edit()
-                .putBoolean(LocalConstants.CacheName.COL_REFRESH_NEEDED.toString(), true)
-                .commit();
-        UserData.getInstance().setAddress((Address) lv.getItemAtPosition(position));
-        updateAllWidgets();
-        finish();
+        submitAddress((Address) lv.getItemAtPosition(position));
     }
 
-    private void updateAllWidgets() {
-        AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(getApplicationContext());
-        int[] appWidgetIds = appWidgetManager.getAppWidgetIds(new ComponentName(this, WidgetProvider.class));
-        if (appWidgetIds.length > 0) {
-            new WidgetProvider().onUpdate(this, appWidgetManager, appWidgetIds);
-        }
+    private void submitAddress(Address address) {
+        UserData.getInstance().setAddress(address);
+        finish();
     }
 
     @Override
@@ -213,6 +209,7 @@ public class AddressListActivity extends AbstractActivity implements SearchView.
         SearchableInfo info = searchManager.getSearchableInfo(getComponentName());
         searchView.setSearchableInfo(info);
         searchView.setOnQueryTextListener(this);
+        searchView.setQueryHint(getString(R.string.address_search_hint));
 
         return super.onCreateOptionsMenu(menu);
     }
@@ -230,15 +227,31 @@ public class AddressListActivity extends AbstractActivity implements SearchView.
 
     @Override
     public boolean onQueryTextSubmit(String query) {
-        if (lv.getChildCount() == 1) {
-            submitAddress(0);
+        if (adapter == null) {
+            return true;
+        }
+        handler.removeCallbacks(applyQuery);
+        pendingQuery = query;
+        // the filter only shows its result later, so the list cannot tell yet
+        // whether the query leaves a single address
+        List<Address> matches = adapter.search(query);
+        if (matches.size() == 1) {
+            submitAddress(matches.get(0));
+        } else {
+            adapter.filter(query);
         }
         return true;
     }
 
     @Override
     public boolean onQueryTextChange(String newText) {
-        adapter.getFilter().filter(newText);
+        pendingQuery = newText;
+        handler.removeCallbacks(applyQuery);
+        if (newText.length() == 0) {
+            applyQuery.run();
+        } else {
+            handler.postDelayed(applyQuery, FILTER_DELAY);
+        }
         return true;
     }
 }
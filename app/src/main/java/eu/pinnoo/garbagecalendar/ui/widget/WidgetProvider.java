@@ -15,7 +15,6 @@
  */
 package eu.pinnoo.garbagecalendar.ui.widget;
 
-import android.app.Activity;
 import android.app.PendingIntent;
 import android.appwidget.AppWidgetManager;
 import android.appwidget.AppWidgetProvider;
@@ -25,8 +24,6 @@ import android.content.Intent;
 import android.graphics.Color;
 import android.widget.RemoteViews;
 
-import java.util.Calendar;
-import java.util.Iterator;
 import java.util.List;
 
 import eu.pinnoo.garbagecalendar.R;
@@ -37,10 +34,13 @@ import eu.pinnoo.garbagecalendar.data.LocalConstants;
 import eu.pinnoo.garbagecalendar.data.Type;
 import eu.pinnoo.garbagecalendar.data.UserData;
 import eu.pinnoo.garbagecalendar.data.caches.AddressCache;
+import eu.pinnoo.garbagecalendar.data.caches.Cache;
 import eu.pinnoo.garbagecalendar.data.caches.CollectionCache;
 import eu.pinnoo.garbagecalendar.data.caches.UserAddressCache;
+import eu.pinnoo.garbagecalendar.data.caches.ValidatorCache;
 import eu.pinnoo.garbagecalendar.ui.CollectionListActivity;
 import eu.pinnoo.garbagecalendar.ui.preferences.AddressListActivity;
+import eu.pinnoo.garbagecalendar.util.DateDecoder;
 import eu.pinnoo.garbagecalendar.util.parsers.CalendarParser;
 import eu.pinnoo.garbagecalendar.util.parsers.Parser.Result;
 import eu.pinnoo.garbagecalendar.util.tasks.CacheTask;
@@ -54,9 +54,24 @@ public class WidgetProvider extends AppWidgetProvider {
 
     private final String SET_BACKGROUND_COLOR = "setBackgroundColor";
     private final String SET_BACKGROUND_RES = "setBackgroundResource";
+    private static volatile int renderedUser = -1;
     private Context c;
     private AppWidgetManager appWidgetManager;
 
+    /**
+     * Asks the widgets, if there are any, to render the current data.
+     */
+    public static void requestUpdate(Context context) {
+        AppWidgetManager manager = AppWidgetManager.getInstance(context);
+        int[] ids = manager.getAppWidgetIds(new ComponentName(context, WidgetProvider.class));
+        if (ids.length > 0) {
+            Intent intent = new Intent(context, WidgetProvider.class);
+            intent.setAction(AppWidgetManager.ACTION_APPWIDGET_UPDATE);
+            intent.putExtra(AppWidgetManager.EXTRA_APPWIDGET_IDS, ids);
+            context.sendBroadcast(intent);
+        }
+    }
+
     @Override
     public void onUpdate(Context c, AppWidgetManager appWidgetManager, int[] appWidgetIds) {
         this.c = c;
@@ -65,9 +80,9 @@ public class WidgetProvider extends AppWidgetProvider {
         AddressCache.initialize(c);
         CollectionCache.initialize(c);
         UserAddressCache.initialize(c);
+        ValidatorCache.initialize(c);
 
-        if (c.getSharedPreferences("PREFERENCE", Activity.MODE_PRIVATE).getBoolean(LocalConstants.CacheName.COL_REFRESH_NEEDED.toString(), true)
-                || !CollectionsData.getInstance().isSet()) {
+        if (renderedUser != UserData.getInstance().getVersion() || !CollectionsData.getInstance().isSet()) {
             initializeCacheAndLoadData();
         } else {
             updateWidgetView();
@@ -92,15 +107,14 @@ public class WidgetProvider extends AppWidgetProvider {
     public void updateWidgetView() {
         ComponentName thisWidget = new ComponentName(c, WidgetProvider.class);
         int[] allWidgetIds = appWidgetManager.getAppWidgetIds(thisWidget);
+        renderedUser = UserData.getInstance().getVersion();
         for (int widgetId : allWidgetIds) {
-            List<Collection> cols = CollectionsData.getInstance().getCollections();
-            Iterator<Collection> it = cols.iterator();
-            Calendar dayToBeShown = Calendar.getInstance();
-            dayToBeShown.add(Calendar.DATE, -1);
+            CollectionsData.Snapshot snapshot = CollectionsData.getInstance().getSnapshot();
+            List<Collection> cols = snapshot.getCollections();
             Collection col = null;
-            while (it.hasNext()) {
-                col = it.next();
-                if (col.getDate().after(dayToBeShown.getTime()) && col.hasAnyNormalType()) {
+            for (int i = snapshot.indexOfDay(DateDecoder.today()); i < cols.size(); i++) {
+                if (cols.get(i).hasAnyNormalType()) {
+                    col = cols.get(i);
                     break;
                 }
             }
@@ -181,20 +195,32 @@ public class WidgetProvider extends AppWidgetProvider {
                 super.onPostExecute(result);
                 checkAddress();
             }
-        }.execute(CollectionsData.getInstance(), UserData.getInstance());
+        }.setParallel(true).executeConcurrently(CollectionsData.getInstance(), UserData.getInstance());
     }
 
+    /**
+     * Renders the cached calendar if it covers the user's sector, and only
+     * checks for a newer one in the background; the calendar is only
+     * downloaded up front when there is none to show.
+     */
     private void checkAddress() {
         if (UserData.getInstance().isSet()) {
-            loadCollections(UserData.getInstance().isChanged());
+            loadCollections(!CollectionsData.getInstance().isSet());
         } else {
             updateWidgetErrorView(c.getString(R.string.widget_setAddress), AddressListActivity.class);
         }
     }
 
+    /**
+     * The process of the widgets can be killed once they are rendered, so
+     * the tasks write what they queued for the caches when they are done.
+     */
     private void loadCollections(boolean force) {
         if (!force && CollectionsData.getInstance().isSet()) {
             updateWidgetView();
+            if (CollectionsData.getInstance().isStale()) {
+                revalidateCollections();
+            }
         } else {
             if (!UserData.getInstance().isSet()) {
                 updateWidgetErrorView(c.getString(R.string.widget_setAddress), AddressListActivity.class);
@@ -205,7 +231,7 @@ public class WidgetProvider extends AppWidgetProvider {
                     super.onPostExecute(result);
                     switch (result[0]) {
                         case SUCCESSFUL:
-                            UserData.getInstance().changeCommitted();
+                        case NOT_MODIFIED:
                             updateWidgetView();
                             break;
                         case NO_INTERNET_CONNECTION:
@@ -217,8 +243,26 @@ public class WidgetProvider extends AppWidgetProvider {
                             updateWidgetErrorView(c.getString(R.string.widget_unknownError), CollectionListActivity.class);
                             break;
                     }
+                    Cache.flush();
                 }
-            }.execute(new CalendarParser());
+            }.executeConcurrently(new CalendarParser());
         }
     }
+
+    /**
+     * Checks for a newer calendar while the widgets keep showing the cached
+     * one; they are only rendered again if a newer calendar was published.
+     */
+    private void revalidateCollections() {
+        new ParserTask(c) {
+            @Override
+            protected void onPostExecute(Result[] result) {
+                super.onPostExecute(result);
+                if (result[0] == Result.SUCCESSFUL) {
+                    updateWidgetView();
+                }
+                Cache.flush();
+            }
+        }.executeConcurrently(new CalendarParser());
+    }
 }
@@ -26,6 +26,6 @@ import eu.pinnoo.garbagecalendar.data.Collection;
 public class DateComparator implements Comparator<Collection> {
 
     public int compare(Collection lhs, Collection rhs) {
-        return lhs.getDate().compareTo(rhs.getDate());
+        return lhs.getDay() < rhs.getDay() ? -1 : (lhs.getDay() == rhs.getDay() ? 0 : 1);
     }
 }
@@ -0,0 +1,108 @@
+/* 
+ * Copyright 2014 Wouter Pinnoo
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.pinnoo.garbagecalendar.util;
+
+import java.util.Calendar;
+import java.util.Date;
+
+/**
+ * Decodes the dates of the IVAGO feeds straight into a day number (days
+ * since 1970-01-01), without going through SimpleDateFormat.
+ *
+ * @author Wouter Pinnoo <pinnoo.wouter@gmail.com>
+ */
+public final class DateDecoder {
+
+    public static final int INVALID = Integer.MIN_VALUE;
+
+    /**
+     * Decodes either yyyy-MM-dd or d/M/yyyy, where the day and the month of
+     * the latter have one or two digits, e.g. "2/01/2013".
+     *
+     * @return the day number, or {@link #INVALID} if the date is malformed
+     */
+    public static int decode(String str) {
+        if (str == null) {
+            return INVALID;
+        }
+        if (str.length() == 10 && str.charAt(4) == '-' && str.charAt(7) == '-') {
+            return toEpochDay(digits(str, 0, 4), digits(str, 5, 2), digits(str, 8, 2));
+        }
+        int first = str.indexOf('/');
+        int second = str.indexOf('/', first + 1);
+        if (first < 1 || first > 2 || second - first < 2 || second - first > 3 || str.length() - second != 5) {
+            return INVALID;
+        }
+        return toEpochDay(digits(str, second + 1, 4), digits(str, first + 1, second - first - 1), digits(str, 0, first));
+    }
+
+    public static int toEpochDay(int year, int month, int day) {
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+            return INVALID;
+        }
+        int y = month <= 2 ? year - 1 : year;
+        int era = y / 400;
+        int yoe = y - era * 400;
+        int doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    /**
+     * Returns the day number of today in the default time zone.
+     */
+    public static int today() {
+        Calendar cal = Calendar.getInstance();
+        return toEpochDay(cal.get(Calendar.YEAR), cal.get(Calendar.MONTH) + 1, cal.get(Calendar.DAY_OF_MONTH));
+    }
+
+    /**
+     * Returns local midnight of the given day number.
+     */
+    public static Date toDate(int epochDay) {
+        Calendar cal = Calendar.getInstance();
+        cal.clear();
+        cal.set(1970, Calendar.JANUARY, 1);
+        cal.add(Calendar.DATE, epochDay);
+        return cal.getTime();
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0 ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    private static int digits(String str, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            char c = str.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
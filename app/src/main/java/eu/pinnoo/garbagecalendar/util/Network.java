@@ -19,10 +19,21 @@ import android.content.Context;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
 
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.zip.GZIPInputStream;
 
 /**
  *
@@ -30,10 +41,181 @@ import java.net.URLConnection;
  */
 public final class Network {
 
-    public static InputStream getStream(String url) throws IOException {
-        URLConnection urlConnection = new URL(url).openConnection();
-        urlConnection.setConnectTimeout(1000);
-        return urlConnection.getInputStream();
+    public static final int CONNECT_TIMEOUT = 5000;
+    public static final int READ_TIMEOUT = 15000;
+    public static final int MAX_ATTEMPTS = 3;
+    private static final long BACKOFF_BASE = 500;
+    private static final long BACKOFF_MAX = 4000;
+
+    /**
+     * Opens a GET request that is made conditional on the given validators,
+     * if any.
+     */
+    public static HttpURLConnection openConnection(String url, Validators validators) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT);
+        connection.setReadTimeout(READ_TIMEOUT);
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+        if (validators != null) {
+            if (validators.getETag() != null) {
+                connection.setRequestProperty("If-None-Match", validators.getETag());
+            }
+            if (validators.getLastModified() > 0) {
+                connection.setIfModifiedSince(validators.getLastModified());
+            }
+        }
+        return connection;
+    }
+
+    /**
+     * Asks to continue a download from the given offset, provided the feed
+     * still matches the validators of the bytes received so far.
+     *
+     * @return false if the validators cannot safely identify the feed, in
+     * which case the download has to start over
+     */
+    public static boolean requestRange(HttpURLConnection connection, long offset, Validators partial) {
+        String ifRange;
+        if (partial.getETag() != null && !partial.getETag().startsWith("W/")) {
+            ifRange = partial.getETag();
+        } else if (partial.getLastModified() > 0) {
+            SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+            format.setTimeZone(TimeZone.getTimeZone("GMT"));
+            ifRange = format.format(new Date(partial.getLastModified()));
+        } else {
+            return false;
+        }
+        connection.setRequestProperty("Range", "bytes=" + offset + "-");
+        connection.setRequestProperty("If-Range", ifRange);
+        return true;
+    }
+
+    /**
+     * @return the offset at which the body of a 206 response starts, or -1
+     * if it is not a single range
+     */
+    public static long getRangeStart(URLConnection connection) {
+        String range = connection.getHeaderField("Content-Range");
+        if (range == null || !range.startsWith("bytes ")) {
+            return -1;
+        }
+        int dash = range.indexOf('-');
+        try {
+            return dash < 0 ? -1 : Long.parseLong(range.substring(6, dash).trim());
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return the length of the complete feed as sent, i.e. before
+     * decompression, or -1 if the server did not tell
+     */
+    public static long getEntityLength(HttpURLConnection connection) throws IOException {
+        String length;
+        if (connection.getResponseCode() == HttpURLConnection.HTTP_PARTIAL) {
+            String range = connection.getHeaderField("Content-Range");
+            int slash = range == null ? -1 : range.lastIndexOf('/');
+            length = slash < 0 ? null : range.substring(slash + 1);
+        } else {
+            length = connection.getHeaderField("Content-Length");
+        }
+        try {
+            return length == null ? -1 : Long.parseLong(length.trim());
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * Streams the body of a response, as sent, into a file. What was
+     * received before an interruption stays in the file.
+     *
+     * @param append whether the body continues the bytes already in the file
+     * @return the number of bytes received
+     */
+    public static long transfer(HttpURLConnection connection, File file, boolean append) throws IOException {
+        InputStream in = connection.getInputStream();
+        OutputStream out = new FileOutputStream(file, append);
+        long count = 0;
+        try {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+                count += n;
+            }
+        } finally {
+            out.close();
+            in.close();
+        }
+        return count;
+    }
+
+    /**
+     * Opens a downloaded feed, decompressing it while it is read if the
+     * server gzipped it.
+     */
+    public static InputStream openStaged(File file, String contentEncoding) throws IOException {
+        InputStream stream = new BufferedInputStream(new FileInputStream(file));
+        if ("gzip".equalsIgnoreCase(contentEncoding)) {
+            return new GZIPInputStream(stream);
+        }
+        return stream;
+    }
+
+    /**
+     * Reads what is left of a response body and closes it, so the
+     * connection can be reused for the next request to the same host.
+     */
+    public static void release(InputStream stream) throws IOException {
+        try {
+            byte[] buffer = new byte[4096];
+            while (stream.read(buffer) != -1) {
+                // discard
+            }
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Releases a response without a body of interest, e.g. a 304 or an
+     * error.
+     */
+    public static void release(HttpURLConnection connection) throws IOException {
+        InputStream stream = connection.getErrorStream();
+        if (stream == null && connection.getResponseCode() < HttpURLConnection.HTTP_BAD_REQUEST) {
+            stream = connection.getInputStream();
+        }
+        if (stream != null) {
+            release(stream);
+        }
+    }
+
+    /**
+     * @return whether a request that got this status may succeed when it is
+     * repeated
+     */
+    public static boolean isRetryable(int code) {
+        return code >= HttpURLConnection.HTTP_INTERNAL_ERROR || code == HttpURLConnection.HTTP_CLIENT_TIMEOUT || code == 429;
+    }
+
+    /**
+     * Waits before the next attempt: twice as long after every failed
+     * attempt, up to {@link #BACKOFF_MAX}.
+     *
+     * @return false if the thread was interrupted while waiting
+     */
+    public static boolean backoff(int attempt) {
+        long delay = Math.min(BACKOFF_BASE << Math.min(attempt - 1, 16), BACKOFF_MAX);
+        try {
+            Thread.sleep(delay);
+            return true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
     }
 
     public static boolean networkAvailable(Context c) {
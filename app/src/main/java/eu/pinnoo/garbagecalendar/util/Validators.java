@@ -0,0 +1,89 @@
+/* 
+ * Copyright 2014 Wouter Pinnoo
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.pinnoo.garbagecalendar.util;
+
+import java.io.Serializable;
+import java.net.URLConnection;
+
+/**
+ * The HTTP validators of a downloaded feed, sent back on the next download
+ * so the server can answer "304 Not Modified".
+ *
+ * @author Wouter Pinnoo <pinnoo.wouter@gmail.com>
+ */
+public class Validators implements Serializable {
+
+    private static final long serialVersionUID = 6260343305911717140L;
+    private final String eTag;
+    private final long lastModified;
+    private final String encoding;
+    private final long checked;
+
+    public Validators(String eTag, long lastModified, String encoding) {
+        this(eTag, lastModified, encoding, System.currentTimeMillis());
+    }
+
+    private Validators(String eTag, long lastModified, String encoding, long checked) {
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+        this.encoding = encoding;
+        this.checked = checked;
+    }
+
+    /**
+     * @return the validators of the response, with its content encoding, or
+     * null if it has none
+     */
+    public static Validators fromResponse(URLConnection connection) {
+        String eTag = connection.getHeaderField("ETag");
+        long lastModified = connection.getLastModified();
+        if (eTag == null && lastModified <= 0) {
+            return null;
+        }
+        return new Validators(eTag, lastModified, connection.getContentEncoding());
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * @return the content encoding the response was sent with, or null if
+     * it was not encoded
+     */
+    public String getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * @return the time the feed was last confirmed current, by a full
+     * response or by a "304 Not Modified", in milliseconds since the epoch
+     */
+    public long getChecked() {
+        return checked;
+    }
+
+    /**
+     * @return these validators, confirmed current at the given time
+     */
+    public Validators revalidated(long time) {
+        return new Validators(eTag, lastModified, encoding, time);
+    }
+}
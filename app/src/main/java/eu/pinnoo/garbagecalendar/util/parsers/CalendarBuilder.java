@@ -0,0 +1,113 @@
+/* 
+ * Copyright 2014 Wouter Pinnoo
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.pinnoo.garbagecalendar.util.parsers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import eu.pinnoo.garbagecalendar.data.Collection;
+import eu.pinnoo.garbagecalendar.data.PrimitiveCollection;
+import eu.pinnoo.garbagecalendar.data.Sector;
+import eu.pinnoo.garbagecalendar.util.DateComparator;
+import eu.pinnoo.garbagecalendar.util.DateDecoder;
+
+/**
+ * Builds the calendar of the whole city, grouped per sector, from the rows
+ * of a calendar feed. Rows of the same sector and day are merged as they
+ * come in; the feed is ordered by date, so a sector only gets sorted when it
+ * turns out not to be.
+ *
+ * @author Wouter Pinnoo <pinnoo.wouter@gmail.com>
+ */
+class CalendarBuilder {
+
+    private final LinkedHashMap<Sector, ArrayList<Collection>> sectors = new LinkedHashMap<Sector, ArrayList<Collection>>();
+    private final HashSet<Sector> unordered = new HashSet<Sector>();
+    private int rejected = 0;
+
+    /**
+     * Adds a row of the feed. Rows without a sector are skipped, rows with a
+     * malformed date are counted as rejected.
+     */
+    void add(PrimitiveCollection row) {
+        if (row == null || row.sector == null) {
+            return;
+        }
+        int day = DateDecoder.decode(row.datum);
+        if (day == DateDecoder.INVALID) {
+            rejected++;
+            return;
+        }
+        Sector sector = Sector.valueOf(row.sector);
+        ArrayList<Collection> list = sectors.get(sector);
+        if (list == null) {
+            list = new ArrayList<Collection>();
+            sectors.put(sector, list);
+        }
+        int types = Collection.parseGarbageType(row.fractie);
+        Collection last = list.isEmpty() ? null : list.get(list.size() - 1);
+        if (last != null && last.getDay() == day) {
+            list.set(list.size() - 1, new Collection(day, last.getTypeMask() | types, sector));
+        } else {
+            if (last != null && day < last.getDay()) {
+                unordered.add(sector);
+            }
+            list.add(new Collection(day, types, sector));
+        }
+    }
+
+    /**
+     * @return the number of rows that were skipped for a malformed date
+     */
+    int getRejected() {
+        return rejected;
+    }
+
+    /**
+     * @return the calendar, grouped per sector in the order the sectors
+     * first appeared, sorted by day within each sector
+     */
+    ArrayList<Collection> build() {
+        ArrayList<Collection> calendar = new ArrayList<Collection>();
+        for (Map.Entry<Sector, ArrayList<Collection>> entry : sectors.entrySet()) {
+            if (unordered.contains(entry.getKey())) {
+                calendar.addAll(sortAndMerge(entry.getValue()));
+            } else {
+                calendar.addAll(entry.getValue());
+            }
+        }
+        return calendar;
+    }
+
+    private static ArrayList<Collection> sortAndMerge(ArrayList<Collection> list) {
+        Collections.sort(list, new DateComparator());
+        ArrayList<Collection> merged = new ArrayList<Collection>(list.size());
+        Collection last = null;
+        for (Collection col : list) {
+            if (last != null && last.getDay() == col.getDay()) {
+                last = new Collection(last.getDay(), last.getTypeMask() | col.getTypeMask(), last.getSector());
+                merged.set(merged.size() - 1, last);
+            } else {
+                merged.add(col);
+                last = col;
+            }
+        }
+        return merged;
+    }
+}
@@ -17,26 +17,20 @@ package eu.pinnoo.garbagecalendar.util.parsers;
 
 import android.util.Log;
 
-import com.google.gson.GsonBuilder;
-import com.google.gson.annotations.SerializedName;
-import com.google.gson.reflect.TypeToken;
 import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
 
 import eu.pinnoo.garbagecalendar.data.Collection;
 import eu.pinnoo.garbagecalendar.data.CollectionsData;
 import eu.pinnoo.garbagecalendar.data.LocalConstants;
 import eu.pinnoo.garbagecalendar.data.PrimitiveCollection;
-import eu.pinnoo.garbagecalendar.data.UserData;
-import eu.pinnoo.garbagecalendar.util.DateComparator;
+import eu.pinnoo.garbagecalendar.data.caches.CollectionCache;
 import eu.pinnoo.garbagecalendar.util.ExceptionHandler;
-import eu.pinnoo.garbagecalendar.util.Network;
 
 /**
  *
@@ -49,25 +43,29 @@ public class CalendarParser extends Parser {
         return LocalConstants.CALENDAR_URL;
     }
 
+    @Override
+    public String getCacheKey() {
+        return LocalConstants.CacheName.COLLECTIONS_DATA.toString();
+    }
+
+    @Override
+    protected boolean isCached() {
+        return CollectionCache.getInstance().exists(getCacheKey());
+    }
+
+    @Override
+    protected boolean loadCachedData() {
+        CollectionsData.getInstance().initialize();
+        return CollectionsData.getInstance().hasCalendar();
+    }
+
     @Override
     protected Result fetchData(ArrayList data) {
         try {
-            ArrayList<Collection> list = new ArrayList<Collection>();
-            HashMap<String, Integer> previousCollections = new HashMap<String, Integer>();
-            for (int i = 0; i < data.size(); i++) {
-                PrimitiveCollection prCol = (PrimitiveCollection) data.get(i);
-                Collection col = new Collection(prCol);
-                if (UserData.getInstance().getAddress().getSector().equals(col.getSector())) {
-                    if (previousCollections.containsKey(prCol.datum)) {
-                        list.get(previousCollections.get(prCol.datum)).addTypes(Collection.parseGarbageType(prCol.fractie));
-                    } else {
-                        list.add(col);
-                        previousCollections.put(prCol.datum, list.indexOf(col));
-                    }
-                }
+            if (data.isEmpty()) {
+                return Result.EMPTY_RESPONSE;
             }
-            Collections.sort(list, new DateComparator());
-            CollectionsData.getInstance().setCollections(list);
+            CollectionsData.getInstance().setCollections((ArrayList<Collection>) data);
         } catch (NullPointerException e) {
             Log.d(LocalConstants.LOG, ExceptionHandler.getDetailedMessage(e));
             return Result.UNKNOWN_ERROR;
@@ -78,18 +76,75 @@ public class CalendarParser extends Parser {
         return Result.SUCCESSFUL;
     }
 
+    /**
+     * Streams the calendar feed token by token into a
+     * {@link CalendarBuilder}.
+     */
     @Override
-    protected ArrayList downloadData() throws IOException {
-        ArrayList<PrimitiveCollection> list = new ArrayList<PrimitiveCollection>();
-        InputStream inp = Network.getStream(getURL());
+    protected ArrayList downloadData(InputStream inp) throws IOException {
+        CalendarBuilder builder = new CalendarBuilder();
         JsonReader reader = new JsonReader(new InputStreamReader(inp, LocalConstants.ENCODING));
-        ArrayList<PrimitiveCollection> results = new GsonBuilder().create().fromJson(reader, new TypeToken<ArrayList<PrimitiveCollection>>(){}.getType());
-        list.addAll(results);
-        reader.close();
-        return list;
+        try {
+            if (!beginCollectionArray(reader)) {
+                return null;
+            }
+            while (reader.hasNext()) {
+                builder.add(readCollection(reader));
+            }
+        } catch (IllegalStateException e) {
+            throw new IOException(e.getMessage());
+        } finally {
+            reader.close();
+        }
+        if (builder.getRejected() > 0) {
+            Log.w(LocalConstants.LOG, "Rejected " + builder.getRejected() + " calendar rows with a malformed date");
+        }
+        return builder.build();
     }
 
-    public class PrimitiveCollectionList {
-        public ArrayList<PrimitiveCollection> list;
+    /**
+     * Positions the reader inside the array of collections. Recent feeds are a
+     * plain array, older ones wrap the array in an object.
+     */
+    private boolean beginCollectionArray(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                reader.nextName();
+                if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+                    reader.beginArray();
+                    return true;
+                }
+                reader.skipValue();
+            }
+            return false;
+        }
+        reader.beginArray();
+        return true;
+    }
+
+    private PrimitiveCollection readCollection(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return null;
+        }
+        PrimitiveCollection prCol = new PrimitiveCollection();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() != JsonToken.STRING) {
+                reader.skipValue();
+            } else if (name.equalsIgnoreCase("Sector") || name.equalsIgnoreCase("locatie")) {
+                prCol.sector = reader.nextString();
+            } else if (name.equalsIgnoreCase("Datum")) {
+                prCol.datum = reader.nextString();
+            } else if (name.equalsIgnoreCase("Fractie")) {
+                prCol.fractie = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return prCol;
     }
 }
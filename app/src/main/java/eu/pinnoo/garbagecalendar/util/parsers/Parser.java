@@ -16,14 +16,20 @@
 package eu.pinnoo.garbagecalendar.util.parsers;
 
 import android.content.Context;
+import android.os.SystemClock;
 import android.util.Log;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.util.ArrayList;
 
 import eu.pinnoo.garbagecalendar.data.LocalConstants;
+import eu.pinnoo.garbagecalendar.data.caches.ValidatorCache;
 import eu.pinnoo.garbagecalendar.util.ExceptionHandler;
 import eu.pinnoo.garbagecalendar.util.Network;
+import eu.pinnoo.garbagecalendar.util.Validators;
 
 /**
  *
@@ -31,31 +37,240 @@ import eu.pinnoo.garbagecalendar.util.Network;
  */
 public abstract class Parser {
 
+    private static final String PARTIAL = ".partial";
+    private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+    private File staging;
+
     public enum Result {
 
-        SUCCESSFUL, EMPTY_RESPONSE, NO_INTERNET_CONNECTION, CONNECTION_FAIL, UNKNOWN_ERROR
+        SUCCESSFUL, NOT_MODIFIED, EMPTY_RESPONSE, NO_INTERNET_CONNECTION, CONNECTION_FAIL, UNKNOWN_ERROR
+    }
+
+    /**
+     * The outcome of one load, with what it cost. A report is filled in by
+     * the load that returns it and not changed afterwards, so it can be
+     * shared with every caller waiting for that load.
+     */
+    public static final class Report {
+
+        private Result result;
+        private int attempts = 0;
+        private long latency = 0;
+        private long bytesTransferred = 0;
+        private long decodeTime = 0;
+
+        public Report(Result result) {
+            this.result = result;
+        }
+
+        public Result getResult() {
+            return result;
+        }
+
+        /**
+         * @return the number of requests made, retries and revalidations
+         * included
+         */
+        public int getAttempts() {
+            return attempts;
+        }
+
+        /**
+         * @return the wall-clock time of the load, retries and backoff
+         * included, in milliseconds
+         */
+        public long getLatency() {
+            return latency;
+        }
+
+        /**
+         * @return the number of bytes of the download, as transferred
+         */
+        public long getBytesTransferred() {
+            return bytesTransferred;
+        }
+
+        /**
+         * @return the CPU time spent decompressing and parsing the download,
+         * in milliseconds
+         */
+        public long getDecodeTime() {
+            return decodeTime;
+        }
     }
 
     protected abstract String getURL();
 
+    /**
+     * @return the cache key of the dataset this parser produces
+     */
+    public abstract String getCacheKey();
+
+    /**
+     * @return whether the dataset is available in the cache, so the download
+     * can be made conditional
+     */
+    protected abstract boolean isCached();
+
+    /**
+     * Loads the cached dataset after the server reported it unchanged.
+     *
+     * @return false if the cached dataset could not be loaded
+     */
+    protected abstract boolean loadCachedData();
+
     protected abstract Result fetchData(ArrayList data);
 
-    protected abstract ArrayList downloadData() throws IOException;
+    protected abstract ArrayList downloadData(InputStream inp) throws IOException;
 
-    public Result loadData(Context c) {
+    public Report loadData(Context c) {
         if (!Network.networkAvailable(c)) {
-            return Result.NO_INTERNET_CONNECTION;
+            return new Report(Result.NO_INTERNET_CONNECTION);
         }
-        ArrayList arr;
+        ValidatorCache.initialize(c);
+        return load(new File(c.getCacheDir(), LocalConstants.CacheName.STAGING.toString()));
+    }
+
+    /**
+     * Loads the feed once the network and the validator cache are known to
+     * be available.
+     *
+     * @param staging the directory downloads are staged in
+     */
+    Report load(File staging) {
+        this.staging = staging;
+        if (!staging.exists() && !staging.mkdirs()) {
+            Log.e(LocalConstants.LOG, "Error making directory for downloads");
+        }
+        Report report = new Report(Result.UNKNOWN_ERROR);
+        long start = SystemClock.elapsedRealtime();
         try {
-            arr = downloadData();
-        } catch (IOException e) {
-            Log.d(LocalConstants.LOG, ExceptionHandler.getDetailedMessage(e));
-            return Result.CONNECTION_FAIL;
+            report.result = download(report);
+        } finally {
+            report.latency = SystemClock.elapsedRealtime() - start;
+        }
+        return report;
+    }
+
+    /**
+     * Downloads the feed into a staging file, retrying failed attempts after
+     * a capped exponential backoff. A retry, or the next load, resumes where
+     * the previous attempt stopped if the feed did not change meanwhile. The
+     * feed is only parsed, and handed to {@link #fetchData}, once the staging
+     * file has the length the server announced.
+     *
+     * @param report counts the attempts and the transferred bytes
+     */
+    private Result download(Report report) {
+        Validators validators = getStoredValidators();
+        File staged = new File(staging, getCacheKey());
+        String partialKey = getCacheKey() + PARTIAL;
+        ArrayList arr;
+        while (true) {
+            report.attempts++;
+            HttpURLConnection connection = null;
+            try {
+                connection = Network.openConnection(getURL(), validators);
+                Validators partial = staged.length() > 0 ? ValidatorCache.getInstance().get(partialKey) : null;
+                boolean resuming = partial != null && Network.requestRange(connection, staged.length(), partial);
+                int code = connection.getResponseCode();
+                if (validators != null && code == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    Network.release(connection);
+                    discard(staged, partialKey);
+                    if (loadCachedData()) {
+                        ValidatorCache.getInstance().put(getCacheKey(), validators.revalidated(System.currentTimeMillis()));
+                        return Result.NOT_MODIFIED;
+                    }
+                    ValidatorCache.getInstance().invalidate(getCacheKey());
+                    validators = null;
+                    continue;
+                }
+                if (code == HTTP_RANGE_NOT_SATISFIABLE) {
+                    Network.release(connection);
+                    discard(staged, partialKey);
+                    throw new IOException(getURL() + " cannot resume at " + staged.length());
+                }
+                if (code >= HttpURLConnection.HTTP_BAD_REQUEST) {
+                    Network.release(connection);
+                    if (!Network.isRetryable(code)) {
+                        Log.d(LocalConstants.LOG, getURL() + " responded " + code);
+                        return Result.CONNECTION_FAIL;
+                    }
+                    throw new IOException(getURL() + " responded " + code);
+                }
+                String encoding = connection.getContentEncoding();
+                boolean append = resuming && code == HttpURLConnection.HTTP_PARTIAL
+                        && Network.getRangeStart(connection) == staged.length()
+                        && (encoding == null ? partial.getEncoding() == null : encoding.equals(partial.getEncoding()));
+                if (code == HttpURLConnection.HTTP_PARTIAL && !append) {
+                    Network.release(connection);
+                    discard(staged, partialKey);
+                    throw new IOException(getURL() + " sent a range that does not continue the download");
+                }
+                if (!append) {
+                    Validators received = Validators.fromResponse(connection);
+                    if (received != null) {
+                        ValidatorCache.getInstance().put(partialKey, received);
+                    } else {
+                        ValidatorCache.getInstance().invalidate(partialKey);
+                    }
+                }
+                long length = Network.getEntityLength(connection);
+                report.bytesTransferred += Network.transfer(connection, staged, append);
+                if (length >= 0 && staged.length() != length) {
+                    if (staged.length() > length) {
+                        discard(staged, partialKey);
+                    }
+                    throw new IOException(getCacheKey() + ": staged " + staged.length() + " of " + length + " bytes");
+                }
+                long start = SystemClock.currentThreadTimeMillis();
+                InputStream inp = Network.openStaged(staged, encoding);
+                try {
+                    arr = downloadData(inp);
+                } finally {
+                    inp.close();
+                    discard(staged, partialKey);
+                }
+                report.decodeTime = SystemClock.currentThreadTimeMillis() - start;
+                Log.d(LocalConstants.LOG, getCacheKey() + ": " + report.bytesTransferred + " bytes transferred ("
+                        + encoding + "), decoded in " + report.decodeTime + " ms CPU time");
+                validators = Validators.fromResponse(connection);
+                break;
+            } catch (IOException e) {
+                Log.d(LocalConstants.LOG, ExceptionHandler.getDetailedMessage(e));
+                if (connection != null) {
+                    connection.disconnect();
+                }
+                if (report.attempts >= Network.MAX_ATTEMPTS || !Network.backoff(report.attempts)) {
+                    return Result.CONNECTION_FAIL;
+                }
+            }
         }
         if (arr == null) {
             return Result.EMPTY_RESPONSE;
         }
-        return fetchData(arr);
+        Result result = fetchData(arr);
+        if (result == Result.SUCCESSFUL) {
+            if (validators != null) {
+                ValidatorCache.getInstance().put(getCacheKey(), validators);
+            } else {
+                ValidatorCache.getInstance().invalidate(getCacheKey());
+            }
+        }
+        return result;
+    }
+
+    private void discard(File staged, String partialKey) {
+        ValidatorCache.getInstance().invalidate(partialKey);
+        if (staged.exists() && !staged.delete()) {
+            Log.e(LocalConstants.LOG, "Error deleting file");
+        }
+    }
+
+    private Validators getStoredValidators() {
+        if (!isCached()) {
+            return null;
+        }
+        return ValidatorCache.getInstance().get(getCacheKey());
     }
-}
\ No newline at end of file
+}
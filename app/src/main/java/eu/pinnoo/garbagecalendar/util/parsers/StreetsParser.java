@@ -31,8 +31,9 @@ import eu.pinnoo.garbagecalendar.data.Address;
 import eu.pinnoo.garbagecalendar.data.AddressData;
 import eu.pinnoo.garbagecalendar.data.LocalConstants;
 import eu.pinnoo.garbagecalendar.data.PrimitiveAddress;
+import eu.pinnoo.garbagecalendar.data.caches.AddressCache;
+import eu.pinnoo.garbagecalendar.data.util.AddressComparator;
 import eu.pinnoo.garbagecalendar.util.ExceptionHandler;
-import eu.pinnoo.garbagecalendar.util.Network;
 
 /**
  *
@@ -45,6 +46,22 @@ public class StreetsParser extends Parser {
         return LocalConstants.STREETS_URL;
     }
 
+    @Override
+    public String getCacheKey() {
+        return LocalConstants.CacheName.ADDRESS_DATA.toString();
+    }
+
+    @Override
+    protected boolean isCached() {
+        return AddressCache.getInstance().exists(getCacheKey());
+    }
+
+    @Override
+    protected boolean loadCachedData() {
+        AddressData.getInstance().initialize();
+        return AddressData.getInstance().isSet();
+    }
+
     @Override
     protected Result fetchData(ArrayList data) {
         try {
@@ -53,6 +70,7 @@ public class StreetsParser extends Parser {
                 PrimitiveAddress prAddr = (PrimitiveAddress) data.get(i);
                 list.add(new Address(prAddr));
             }
+            AddressComparator.sort(list);
             AddressData.getInstance().setAddresses(list);
         } catch (NullPointerException e) {
             Log.d(LocalConstants.LOG, ExceptionHandler.getDetailedMessage(e));
@@ -65,9 +83,8 @@ public class StreetsParser extends Parser {
     }
 
     @Override
-    protected ArrayList downloadData() throws IOException {
+    protected ArrayList downloadData(InputStream inp) throws IOException {
         ArrayList<PrimitiveAddress> list = new ArrayList<PrimitiveAddress>();
-        InputStream inp = Network.getStream(getURL());
         JsonReader reader = new JsonReader(new InputStreamReader(inp, LocalConstants.ENCODING));
         PrimitiveAddressList results = new GsonBuilder().create().fromJson(reader, PrimitiveAddressList.class);
         list.addAll((Collection<PrimitiveAddress>) results.list);
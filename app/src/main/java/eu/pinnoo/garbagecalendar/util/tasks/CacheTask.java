@@ -20,6 +20,8 @@ import android.content.Context;
 import android.os.AsyncTask;
 import android.util.Log;
 
+import java.util.concurrent.Callable;
+
 import eu.pinnoo.garbagecalendar.data.DataContainer;
 import eu.pinnoo.garbagecalendar.data.LocalConstants;
 
@@ -29,9 +31,14 @@ import eu.pinnoo.garbagecalendar.data.LocalConstants;
  */
 public class CacheTask extends AsyncTask<DataContainer, Integer, Integer[]> {
 
+    /**
+     * The result of a container that could not be initialized.
+     */
+    public static final int FAILED = -1;
     protected ProgressDialog dialog;
     private String msg;
     private boolean showDialog;
+    private boolean parallel = false;
 
     public CacheTask(Context context, String msg, boolean showDialog) {
         if (showDialog) {
@@ -58,20 +65,51 @@ public class CacheTask extends AsyncTask<DataContainer, Integer, Integer[]> {
         }
     }
 
+    /**
+     * Makes the task initialize its containers concurrently instead of one
+     * after another. Only use it for containers that do not depend on each
+     * other.
+     */
+    public CacheTask setParallel(boolean parallel) {
+        this.parallel = parallel;
+        return this;
+    }
+
+    /**
+     * Starts the task on the shared thread pool. Since API 11,
+     * {@link #execute} runs tasks one after another, so a task could never
+     * join the initialization of a container that another task is running.
+     */
+    public final CacheTask executeConcurrently(DataContainer... params) {
+        executeOnExecutor(THREAD_POOL_EXECUTOR, params);
+        return this;
+    }
+
     @Override
     protected Integer[] doInBackground(DataContainer... params) {
         Integer[] results = new Integer[params.length];
-        for (int i = 0; i < params.length; i++) {
-            Log.d(LocalConstants.LOG, "Starting with " + params[i].getClass().getName() + "...");
-            long start = System.currentTimeMillis();
-            results[i] = params[i].initialize();
-            long end = System.currentTimeMillis();
-            publishProgress((int) ((i / (float) params.length) * 100));
-            Log.d(LocalConstants.LOG, "... done with " + params[i].getClass().getName() + ", took " + (end - start) + "ms.");
-            if (isCancelled()) {
-                break;
+        ParallelLoader.run(params, results, new ParallelLoader.Load<DataContainer, Integer>() {
+            public Integer run(final DataContainer container) {
+                return SingleFlight.run(container.getClass().getName(), new Callable<Integer>() {
+                    public Integer call() {
+                        Log.d(LocalConstants.LOG, "Starting with " + container.getClass().getName() + "...");
+                        long start = System.currentTimeMillis();
+                        int result = container.initialize();
+                        long end = System.currentTimeMillis();
+                        Log.d(LocalConstants.LOG, "... done with " + container.getClass().getName() + ", took " + (end - start) + "ms.");
+                        return result;
+                    }
+                }, FAILED);
             }
-        }
+        }, parallel, new ParallelLoader.Progress() {
+            public void onFinished(int done, int total) {
+                publishProgress((int) ((done / (float) total) * 100));
+            }
+
+            public boolean isCancelled() {
+                return CacheTask.this.isCancelled();
+            }
+        });
         return results;
     }
 
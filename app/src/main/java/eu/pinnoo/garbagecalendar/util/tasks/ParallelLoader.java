@@ -0,0 +1,148 @@
+/* 
+ * Copyright 2014 Wouter Pinnoo
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.pinnoo.garbagecalendar.util.tasks;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import eu.pinnoo.garbagecalendar.data.LocalConstants;
+import eu.pinnoo.garbagecalendar.util.ExceptionHandler;
+
+/**
+ * Runs the loads of a task, one after another or concurrently on a small
+ * shared pool. Results keep the order of the loads either way.
+ *
+ * @author Wouter Pinnoo <pinnoo.wouter@gmail.com>
+ */
+final class ParallelLoader {
+
+    private static final int THREADS = 2;
+    private static final long CANCEL_POLL = 100;
+    private static final ThreadPoolExecutor executor;
+
+    static {
+        executor = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "loader-" + count.incrementAndGet());
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    interface Load<P, R> {
+
+        R run(P param);
+    }
+
+    interface Progress {
+
+        /**
+         * Called on the loading thread after every finished load.
+         */
+        void onFinished(int done, int total);
+
+        boolean isCancelled();
+    }
+
+    private ParallelLoader() {
+    }
+
+    /**
+     * Runs the load for every parameter and stores its outcome at the same
+     * index in results. Loads that did not finish before a cancellation
+     * leave their result null; results is not written to after this returns.
+     */
+    static <P, R> void run(P[] params, R[] results, Load<P, R> load, boolean parallel, Progress progress) {
+        if (!parallel || params.length < 2) {
+            for (int i = 0; i < params.length && !progress.isCancelled(); i++) {
+                results[i] = load.run(params[i]);
+                progress.onFinished(i + 1, params.length);
+            }
+            return;
+        }
+        CompletionService<Slot<P, R>> service = new ExecutorCompletionService<Slot<P, R>>(executor);
+        List<Future<Slot<P, R>>> futures = new ArrayList<Future<Slot<P, R>>>(params.length);
+        for (int i = 0; i < params.length; i++) {
+            futures.add(service.submit(new Slot<P, R>(load, params[i], i)));
+        }
+        int done = 0;
+        try {
+            while (done < params.length) {
+                if (progress.isCancelled()) {
+                    break;
+                }
+                Future<Slot<P, R>> future = service.poll(CANCEL_POLL, TimeUnit.MILLISECONDS);
+                if (future == null) {
+                    continue;
+                }
+                try {
+                    Slot<P, R> slot = future.get();
+                    results[slot.index] = slot.result;
+                } catch (ExecutionException ex) {
+                    Log.d(LocalConstants.LOG, ExceptionHandler.getDetailedMessage(ex));
+                }
+                progress.onFinished(++done, params.length);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (Future<Slot<P, R>> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * One load on the pool. It keeps its result to itself; only the calling
+     * thread copies it into the results, and only while it is still waiting
+     * for them.
+     */
+    private static class Slot<P, R> implements Callable<Slot<P, R>> {
+
+        private final Load<P, R> load;
+        private final P param;
+        final int index;
+        R result;
+
+        Slot(Load<P, R> load, P param, int index) {
+            this.load = load;
+            this.param = param;
+            this.index = index;
+        }
+
+        public Slot<P, R> call() {
+            result = load.run(param);
+            return this;
+        }
+    }
+}
@@ -20,8 +20,11 @@ import android.content.Context;
 import android.os.AsyncTask;
 import android.util.Log;
 
+import java.util.concurrent.Callable;
+
 import eu.pinnoo.garbagecalendar.data.LocalConstants;
 import eu.pinnoo.garbagecalendar.util.parsers.Parser;
+import eu.pinnoo.garbagecalendar.util.parsers.Parser.Report;
 import eu.pinnoo.garbagecalendar.util.parsers.Parser.Result;
 
 /**
@@ -30,6 +33,8 @@ import eu.pinnoo.garbagecalendar.util.parsers.Parser.Result;
  */
 public class ParserTask extends AsyncTask<Parser, Integer, Result[]> {
 
+    private static final Report FAILED = new Report(Result.UNKNOWN_ERROR);
+
     protected ProgressDialog dialog;
     private Context context;
     private String msg;
@@ -61,20 +66,40 @@ public class ParserTask extends AsyncTask<Parser, Integer, Result[]> {
         }
     }
 
+    /**
+     * Starts the task on the shared thread pool. Since API 11,
+     * {@link #execute} runs tasks one after another, so a task could never
+     * join a load of the same dataset that another task is running.
+     */
+    public final ParserTask executeConcurrently(Parser... params) {
+        executeOnExecutor(THREAD_POOL_EXECUTOR, params);
+        return this;
+    }
+
     @Override
     protected Result[] doInBackground(Parser... params) {
         Result[] results = new Result[params.length];
-        for (int i = 0; i < params.length; i++) {
-            Log.d(LocalConstants.LOG, "Starting with " + params[i].getClass().getName() + "...");
-            long start = System.currentTimeMillis();
-            results[i] = params[i].loadData(context);
-            long end = System.currentTimeMillis();
-            publishProgress((int) ((i / (float) params.length) * 100));
-            Log.d(LocalConstants.LOG, "... done with " + params[i].getClass().getName() + ", took " + (end - start) + "ms.");
-            if (isCancelled()) {
-                break;
+        ParallelLoader.run(params, results, new ParallelLoader.Load<Parser, Result>() {
+            public Result run(final Parser parser) {
+                return SingleFlight.run(parser.getCacheKey(), new Callable<Report>() {
+                    public Report call() {
+                        Log.d(LocalConstants.LOG, "Starting with " + parser.getClass().getName() + "...");
+                        Report report = parser.loadData(context);
+                        Log.d(LocalConstants.LOG, "... done with " + parser.getClass().getName() + ": " + report.getResult() + ", took " + report.getLatency() + "ms, "
+                                + report.getAttempts() + " attempt(s).");
+                        return report;
+                    }
+                }, FAILED).getResult();
             }
-        }
+        }, false, new ParallelLoader.Progress() {
+            public void onFinished(int done, int total) {
+                publishProgress((int) ((done / (float) total) * 100));
+            }
+
+            public boolean isCancelled() {
+                return ParserTask.this.isCancelled();
+            }
+        });
         return results;
     }
 
@@ -0,0 +1,75 @@
+/* 
+ * Copyright 2014 Wouter Pinnoo
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.pinnoo.garbagecalendar.util.tasks;
+
+import android.util.Log;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import eu.pinnoo.garbagecalendar.data.LocalConstants;
+import eu.pinnoo.garbagecalendar.util.ExceptionHandler;
+
+/**
+ * Makes sure a dataset is loaded by one caller at a time in the whole
+ * process. A caller that asks for a dataset that is already being loaded,
+ * e.g. by the widget while the app is open, waits for that load and gets
+ * its result instead of starting another one.
+ *
+ * @author Wouter Pinnoo <pinnoo.wouter@gmail.com>
+ */
+final class SingleFlight {
+
+    private static final ConcurrentHashMap<String, FutureTask<?>> inFlight = new ConcurrentHashMap<String, FutureTask<?>>();
+
+    private SingleFlight() {
+    }
+
+    /**
+     * Runs the load on the calling thread, or waits for the load of the same
+     * key that is already running.
+     *
+     * @param failed what to return if the load failed or the caller was
+     * interrupted while waiting
+     * @return the result of the load
+     */
+    @SuppressWarnings("unchecked")
+    static <R> R run(String key, Callable<R> load, R failed) {
+        FutureTask<R> task = new FutureTask<R>(load);
+        FutureTask<R> running = (FutureTask<R>) inFlight.putIfAbsent(key, task);
+        if (running == null) {
+            try {
+                task.run();
+            } finally {
+                inFlight.remove(key, task);
+            }
+            running = task;
+        } else {
+            Log.d(LocalConstants.LOG, "Joining the running load of " + key);
+        }
+        try {
+            R result = running.get();
+            return result == null ? failed : result;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            Log.d(LocalConstants.LOG, ExceptionHandler.getDetailedMessage(ex));
+        }
+        return failed;
+    }
+}
@@ -0,0 +1,73 @@
+/* 
+ * Copyright 2014 Wouter Pinnoo
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.pinnoo.garbagecalendar;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The feeds in the extra/ directory of the repository, for the unit tests.
+ *
+ * @author Wouter Pinnoo <pinnoo.wouter@gmail.com>
+ */
+public final class Feeds {
+
+    public static final String STREETS = "IVAGO-Stratenlijst.json";
+    public static final String COLLECTIONS = "IVAGO-Inzamelkalender.json";
+    public static final String CALENDAR_2015 = "IvagoOphaalkalender2015.json";
+    public static final String CALENDAR_2016 = "IvagoOphaalkalender2016.json";
+
+    private Feeds() {
+    }
+
+    /**
+     * Unit tests run from the module directory, or from the repository when
+     * started from an IDE.
+     */
+    public static File file(String name) {
+        File file = new File("../extra", name);
+        return file.exists() ? file : new File("extra", name);
+    }
+
+    /**
+     * @return the rows of a feed, which wraps them in an object with a
+     * single array
+     */
+    public static List<JsonObject> rows(String name) throws IOException {
+        Reader reader = new InputStreamReader(new FileInputStream(file(name)), "UTF-8");
+        try {
+            JsonObject root = new JsonParser().parse(reader).getAsJsonObject();
+            JsonArray array = root.entrySet().iterator().next().getValue().getAsJsonArray();
+            List<JsonObject> rows = new ArrayList<JsonObject>(array.size());
+            for (JsonElement row : array) {
+                rows.add(row.getAsJsonObject());
+            }
+            return rows;
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/* 
+ * Copyright 2014 Wouter Pinnoo
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.pinnoo.garbagecalendar.data;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ *
+ * @author Wouter Pinnoo <pinnoo.wouter@gmail.com>
+ */
+public class SectorTest {
+
+    @Test
+    public void sharesSectorsSpelledDifferently() {
+        assertSame(Sector.valueOf("L11"), Sector.valueOf("l11"));
+        assertSame(AreaType.L, Sector.valueOf("l11").getType());
+        assertEquals("11", Sector.valueOf("l11").getCode());
+    }
+
+    /**
+     * A spelling in the feeds can look like the key of another sector.
+     */
+    @Test
+    public void keepsSpellingsApartFromSectors() {
+        Sector city = Sector.valueOf("V:24");
+        Sector sector = Sector.valueOf("V24");
+        assertNotSame(city, sector);
+        assertSame(AreaType.CITY, city.getType());
+        assertSame(AreaType.V, sector.getType());
+        assertSame(city, Sector.valueOf("V:24"));
+    }
+
+    @Test
+    public void sharesDeserializedSectors() throws IOException, ClassNotFoundException {
+        Sector sector = Sector.valueOf("L12");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(sector);
+        out.close();
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertSame(sector, in.readObject());
+    }
+}
@@ -0,0 +1,175 @@
+/* 
+ * Copyright 2014 Wouter Pinnoo
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.pinnoo.garbagecalendar.data.caches;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+
+import eu.pinnoo.garbagecalendar.Feeds;
+import eu.pinnoo.garbagecalendar.data.Address;
+import eu.pinnoo.garbagecalendar.data.Collection;
+import eu.pinnoo.garbagecalendar.data.PrimitiveAddress;
+import eu.pinnoo.garbagecalendar.data.Sector;
+import eu.pinnoo.garbagecalendar.util.DateDecoder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Round-trips the address list and the calendar of extra/ through the
+ * binary codecs, and compares them with Java serialization, the format of
+ * the caches before the binary codecs.
+ *
+ * @author Wouter Pinnoo <pinnoo.wouter@gmail.com>
+ */
+public class BinaryCodecTest {
+
+    private static final int WARMUP = 20;
+    private static final int ITERATIONS = 50;
+
+    @Test
+    public void roundTripsTheAddressList() throws IOException {
+        ArrayList<Address> addresses = addresses();
+        ArrayList<Address> read = decode(new AddressListCodec(), encode(new AddressListCodec(), addresses));
+        assertEquals(addresses.size(), read.size());
+        for (int i = 0; i < addresses.size(); i++) {
+            Address expected = addresses.get(i);
+            Address actual = read.get(i);
+            assertEquals(expected.getStreetname(), actual.getStreetname());
+            assertEquals(expected.getCode(), actual.getCode());
+            assertEquals(expected.getNrOddBegin(), actual.getNrOddBegin());
+            assertEquals(expected.getNrOddEnd(), actual.getNrOddEnd());
+            assertEquals(expected.getNrEvenBegin(), actual.getNrEvenBegin());
+            assertEquals(expected.getNrEvenEnd(), actual.getNrEvenEnd());
+            assertEquals(expected.getZipcode(), actual.getZipcode());
+            assertEquals(expected.getCity(), actual.getCity());
+            assertSame(expected.getSector(), actual.getSector());
+        }
+    }
+
+    @Test
+    public void roundTripsTheCalendar() throws IOException {
+        ArrayList<Collection> calendar = calendar();
+        ArrayList<Collection> read = decode(new CollectionListCodec(), encode(new CollectionListCodec(), calendar));
+        assertEquals(calendar.size(), read.size());
+        for (int i = 0; i < calendar.size(); i++) {
+            assertEquals(calendar.get(i).getDay(), read.get(i).getDay());
+            assertEquals(calendar.get(i).getTypeMask(), read.get(i).getTypeMask());
+            assertSame(calendar.get(i).getSector(), read.get(i).getSector());
+        }
+    }
+
+    /**
+     * Version 1 address lists were stored in the order of the feed.
+     */
+    @Test
+    public void rejectsVersionOneAddressLists() throws IOException {
+        byte[] file = encode(new AddressListCodec(), addresses());
+        // the version follows the magic number and the format id
+        file[5] = 1;
+        try {
+            decode(new AddressListCodec(), file);
+            fail("A version 1 address list was read");
+        } catch (StreamCorruptedException expected) {
+            // the cache falls back to Java serialization
+        }
+    }
+
+    @Test
+    public void rejectsSerializedFiles() throws IOException {
+        byte[] serialized = encode(new SerializableCodec<ArrayList<Address>>(), addresses());
+        try {
+            decode(new AddressListCodec(), serialized);
+            fail("A serialized list was read as a binary one");
+        } catch (StreamCorruptedException expected) {
+            // the cache falls back to Java serialization
+        }
+    }
+
+    /**
+     * The binary files are smaller than the serialized ones; the decode
+     * times of both are printed for comparison.
+     */
+    @Test
+    public void benchmarkAgainstSerialization() throws IOException {
+        compare("addresses", addresses(), new AddressListCodec());
+        compare("calendar", calendar(), new CollectionListCodec());
+    }
+
+    private static <T extends Serializable> void compare(String name, T value, Codec<T> binary) throws IOException {
+        Codec<T> serializable = new SerializableCodec<T>();
+        byte[] binaryFile = encode(binary, value);
+        byte[] serializedFile = encode(serializable, value);
+        System.out.println(name + ": binary " + binaryFile.length + " bytes, decoded in " + decodeTime(binary, binaryFile)
+                + " us; serialized " + serializedFile.length + " bytes, decoded in " + decodeTime(serializable, serializedFile) + " us");
+        assertTrue(name, binaryFile.length < serializedFile.length);
+    }
+
+    /**
+     * @return the average decode time, in microseconds
+     */
+    private static <T> long decodeTime(Codec<T> codec, byte[] file) throws IOException {
+        long total = 0;
+        for (int i = 0; i < WARMUP + ITERATIONS; i++) {
+            long start = System.nanoTime();
+            decode(codec, file);
+            if (i >= WARMUP) {
+                total += System.nanoTime() - start;
+            }
+        }
+        return total / ITERATIONS / 1000;
+    }
+
+    private static <T> byte[] encode(Codec<T> codec, T value) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        codec.write(value, out);
+        return out.toByteArray();
+    }
+
+    private static <T> T decode(Codec<T> codec, byte[] file) throws IOException {
+        return codec.read(new ByteArrayInputStream(file));
+    }
+
+    private static ArrayList<Address> addresses() throws IOException {
+        Gson gson = new Gson();
+        ArrayList<Address> addresses = new ArrayList<Address>();
+        for (JsonObject row : Feeds.rows(Feeds.STREETS)) {
+            addresses.add(new Address(gson.fromJson(row, PrimitiveAddress.class)));
+        }
+        return addresses;
+    }
+
+    private static ArrayList<Collection> calendar() throws IOException {
+        ArrayList<Collection> calendar = new ArrayList<Collection>();
+        for (JsonObject row : Feeds.rows(Feeds.COLLECTIONS)) {
+            calendar.add(new Collection(DateDecoder.decode(row.get("datum").getAsString()),
+                    Collection.parseGarbageType(row.get("fractie").getAsString()),
+                    Sector.valueOf(row.get("locatie").getAsString())));
+        }
+        return calendar;
+    }
+}
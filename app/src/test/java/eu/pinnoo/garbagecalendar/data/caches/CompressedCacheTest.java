@@ -0,0 +1,136 @@
+/* 
+ * Copyright 2014 Wouter Pinnoo
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.pinnoo.garbagecalendar.data.caches;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import eu.pinnoo.garbagecalendar.Feeds;
+import eu.pinnoo.garbagecalendar.data.Address;
+import eu.pinnoo.garbagecalendar.data.PrimitiveAddress;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Stores the address list of extra/ in a compressed and in a plain cache,
+ * and prints what each takes on disk and to read back.
+ *
+ * @author Wouter Pinnoo <pinnoo.wouter@gmail.com>
+ */
+public class CompressedCacheTest {
+
+    private static final String KEY = "addresses";
+    private static final int WARMUP = 20;
+    private static final int ITERATIONS = 50;
+    private File plainDir;
+    private File compressedDir;
+
+    @Before
+    public void createDirectories() throws IOException {
+        plainDir = createDirectory("plain");
+        compressedDir = createDirectory("compressed");
+    }
+
+    @After
+    public void deleteDirectories() {
+        delete(plainDir);
+        delete(compressedDir);
+    }
+
+    @Test
+    public void compressesEntries() throws IOException {
+        ArrayList<Address> addresses = addresses();
+        cache(plainDir, false).put(KEY, addresses);
+        cache(compressedDir, true).put(KEY, addresses);
+        long plain = cache(plainDir, false).length(KEY);
+        long compressed = cache(compressedDir, true).length(KEY);
+        assertEquals(addresses.size(), cache(compressedDir, true).get(KEY).size());
+        System.out.println("address list cache: " + plain + " bytes plain, read in " + readTime(plainDir, false)
+                + " us; " + compressed + " bytes gzipped, read in " + readTime(compressedDir, true) + " us");
+        assertTrue(compressed < plain / 2);
+    }
+
+    /**
+     * Whether an entry is compressed is read from the file, so entries
+     * written before the cache was compressed stay readable, and the other
+     * way around.
+     */
+    @Test
+    public void readsEntriesWhateverTheSetting() throws IOException {
+        ArrayList<Address> addresses = addresses();
+        cache(plainDir, false).put(KEY, addresses);
+        cache(compressedDir, true).put(KEY, addresses);
+        assertEquals(addresses.size(), cache(plainDir, true).get(KEY).size());
+        assertEquals(addresses.size(), cache(compressedDir, false).get(KEY).size());
+    }
+
+    /**
+     * @return the average time to read the entry with an empty memory tier,
+     * in microseconds
+     */
+    private static long readTime(File dir, boolean compressed) {
+        long total = 0;
+        for (int i = 0; i < WARMUP + ITERATIONS; i++) {
+            Cache<ArrayList<Address>> cache = cache(dir, compressed);
+            long start = System.nanoTime();
+            cache.get(KEY);
+            if (i >= WARMUP) {
+                total += System.nanoTime() - start;
+            }
+        }
+        return total / ITERATIONS / 1000;
+    }
+
+    private static Cache<ArrayList<Address>> cache(File dir, boolean compressed) {
+        return new Cache<ArrayList<Address>>(dir, new AddressListCodec(), 1, compressed);
+    }
+
+    private static ArrayList<Address> addresses() throws IOException {
+        Gson gson = new Gson();
+        ArrayList<Address> addresses = new ArrayList<Address>();
+        for (JsonObject row : Feeds.rows(Feeds.STREETS)) {
+            addresses.add(new Address(gson.fromJson(row, PrimitiveAddress.class)));
+        }
+        return addresses;
+    }
+
+    private static File createDirectory(String name) throws IOException {
+        File dir = File.createTempFile(name, "");
+        if (!dir.delete() || !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        return dir;
+    }
+
+    private static void delete(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+}
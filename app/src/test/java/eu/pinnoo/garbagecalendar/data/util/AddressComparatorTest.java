@@ -0,0 +1,111 @@
+/* 
+ * Copyright 2014 Wouter Pinnoo
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.pinnoo.garbagecalendar.data.util;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import eu.pinnoo.garbagecalendar.Feeds;
+import eu.pinnoo.garbagecalendar.data.Address;
+import eu.pinnoo.garbagecalendar.data.PrimitiveAddress;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Sorts a shuffled copy of the street list of extra/ with collation keys,
+ * and compares it with a sort that collates every comparison.
+ *
+ * @author Wouter Pinnoo <pinnoo.wouter@gmail.com>
+ */
+public class AddressComparatorTest {
+
+    private static final long SEED = 3;
+    private static final int WARMUP = 5;
+    private static final int ITERATIONS = 10;
+
+    @Test
+    public void sortsLikeACollatingComparator() throws IOException {
+        List<Address> addresses = shuffledAddresses();
+        List<Address> collated = new ArrayList<Address>(addresses);
+        Collections.sort(collated, collating());
+        AddressComparator.sort(addresses);
+        assertEquals(collated, addresses);
+    }
+
+    /**
+     * Prints the average time of both sorts.
+     */
+    @Test
+    public void benchmarkAgainstCollatingComparator() throws IOException {
+        List<Address> addresses = shuffledAddresses();
+        long collated = 0;
+        long keyed = 0;
+        for (int i = 0; i < WARMUP + ITERATIONS; i++) {
+            List<Address> copy = new ArrayList<Address>(addresses);
+            long start = System.nanoTime();
+            Collections.sort(copy, collating());
+            long middle = System.nanoTime();
+            AddressComparator.sort(new ArrayList<Address>(addresses));
+            if (i >= WARMUP) {
+                collated += middle - start;
+                keyed += System.nanoTime() - middle;
+            }
+        }
+        System.out.println("sort of " + addresses.size() + " addresses: collating comparator "
+                + collated / ITERATIONS / 1000 + " us, collation keys " + keyed / ITERATIONS / 1000 + " us");
+    }
+
+    /**
+     * @return the order of {@link AddressComparator}, collating the names
+     * on every comparison
+     */
+    private static Comparator<Address> collating() {
+        final Collator collator = Collator.getInstance(AddressComparator.LOCALE);
+        return new Comparator<Address>() {
+            public int compare(Address lhs, Address rhs) {
+                int cmp = collator.compare(lhs.getStreetname(), rhs.getStreetname());
+                if (cmp != 0) {
+                    return cmp;
+                }
+                cmp = collator.compare(lhs.getCity(), rhs.getCity());
+                if (cmp != 0) {
+                    return cmp;
+                }
+                return lhs.getCode().compareTo(rhs.getCode());
+            }
+        };
+    }
+
+    private static List<Address> shuffledAddresses() throws IOException {
+        Gson gson = new Gson();
+        List<Address> addresses = new ArrayList<Address>();
+        for (JsonObject row : Feeds.rows(Feeds.STREETS)) {
+            addresses.add(new Address(gson.fromJson(row, PrimitiveAddress.class)));
+        }
+        Collections.shuffle(addresses, new Random(SEED));
+        return addresses;
+    }
+}
@@ -0,0 +1,212 @@
+/* 
+ * Copyright 2014 Wouter Pinnoo
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.pinnoo.garbagecalendar.data.util;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import eu.pinnoo.garbagecalendar.Feeds;
+import eu.pinnoo.garbagecalendar.data.Address;
+import eu.pinnoo.garbagecalendar.data.PrimitiveAddress;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Searches the street list of extra/ through the index, and compares the
+ * results with a scan of the whole list, the way the address list was
+ * filtered before the index.
+ *
+ * @author Wouter Pinnoo <pinnoo.wouter@gmail.com>
+ */
+public class AddressIndexTest {
+
+    private static final String[] QUERIES = {"a", "aa", "st", "straat", "gent", "weg", "kerk", "zzz",
+        "laan", "ou", "sint-", "de ", "Gent", "x", "dreef", "n"};
+    private static final String[] TYPED = {"kerkstraat", "sint-pietersnieuwstraat", "gentweg",
+        "oudenaardsesteenweg", "drongen", "zwijnaarde"};
+    private static final String[][] MISSPELLED = {{"vrydagmakt", "Vrijdagmarkt"}, {"ryssenberg", "Rijsenbergstraat"},
+        {"koupure", "Coupure"}, {"lubekstraat", "Lübeckstraat"}, {"ovrepoort", "Overpoortstraat"}};
+    /**
+     * The budget of the address list.
+     */
+    private static final long FUZZY_BUDGET = 5000000;
+    private static final int WARMUP = 20;
+    private static final int ITERATIONS = 50;
+    private static List<Address> addresses;
+    private static AddressIndex index;
+
+    @BeforeClass
+    public static void buildIndex() throws IOException {
+        Gson gson = new Gson();
+        addresses = new ArrayList<Address>();
+        for (JsonObject row : Feeds.rows(Feeds.STREETS)) {
+            addresses.add(new Address(gson.fromJson(row, PrimitiveAddress.class)));
+        }
+        AddressComparator.sort(addresses);
+        index = new AddressIndex(addresses);
+    }
+
+    @Test
+    public void findsWhatAScanFinds() {
+        for (String query : QUERIES) {
+            assertEquals(query, scan(query), index.search(query, null, null).getAddresses());
+        }
+    }
+
+    /**
+     * Types the streets one character at a time, refining the previous
+     * result as the address list does.
+     */
+    @Test
+    public void refinesWhatAScanFinds() {
+        for (String typed : TYPED) {
+            AddressIndex.Result previous = null;
+            for (int length = 1; length <= typed.length(); length++) {
+                String query = typed.substring(0, length);
+                previous = index.search(query, previous, null);
+                assertEquals(query, scan(query), previous.getAddresses());
+            }
+        }
+    }
+
+    @Test
+    public void findsStreetsWithoutTheirAccents() {
+        assertFalse(index.search("lubeck", null, null).getAddresses().isEmpty());
+        assertEquals("Lübeckstraat", index.search("lubeck", null, null).getAddresses().get(0).getStreetname());
+    }
+
+    @Test
+    public void findsMisspelledStreetsFirst() {
+        for (String[] misspelled : MISSPELLED) {
+            assertTrue(misspelled[0], index.search(misspelled[0], null, null).getAddresses().isEmpty());
+            AddressIndex.Result result = index.searchFuzzy(misspelled[0], FUZZY_BUDGET, null);
+            assertTrue(result.isFuzzy());
+            assertEquals(misspelled[0], misspelled[1], result.getAddresses().get(0).getStreetname());
+        }
+    }
+
+    @Test
+    public void stopsWhenCancelled() {
+        AddressIndex.Cancellation cancelled = new AddressIndex.Cancellation() {
+            public boolean isCancelled() {
+                return true;
+            }
+        };
+        assertNull(index.search("st", null, cancelled));
+    }
+
+    /**
+     * Prints the average time of a search and of a scan, for every query.
+     */
+    @Test
+    public void benchmarkAgainstScan() {
+        for (String query : QUERIES) {
+            long indexed = 0;
+            long scanned = 0;
+            for (int i = 0; i < WARMUP + ITERATIONS; i++) {
+                long start = System.nanoTime();
+                index.search(query, null, null);
+                long middle = System.nanoTime();
+                scan(query);
+                if (i >= WARMUP) {
+                    indexed += middle - start;
+                    scanned += System.nanoTime() - middle;
+                }
+            }
+            System.out.println("\"" + query + "\": index " + indexed / ITERATIONS / 1000
+                    + " us, scan " + scanned / ITERATIONS / 1000 + " us");
+        }
+    }
+
+    /**
+     * Prints the time to type every street when each search starts afresh,
+     * and when it refines the previous result.
+     */
+    @Test
+    public void benchmarkRefinement() {
+        for (String typed : TYPED) {
+            long fresh = 0;
+            long refined = 0;
+            for (int i = 0; i < WARMUP + ITERATIONS; i++) {
+                long start = System.nanoTime();
+                for (int length = 1; length <= typed.length(); length++) {
+                    index.search(typed.substring(0, length), null, null);
+                }
+                long middle = System.nanoTime();
+                AddressIndex.Result previous = null;
+                for (int length = 1; length <= typed.length(); length++) {
+                    previous = index.search(typed.substring(0, length), previous, null);
+                }
+                if (i >= WARMUP) {
+                    fresh += middle - start;
+                    refined += System.nanoTime() - middle;
+                }
+            }
+            System.out.println("\"" + typed + "\": fresh " + fresh / ITERATIONS / 1000
+                    + " us, refined " + refined / ITERATIONS / 1000 + " us");
+        }
+    }
+
+    /**
+     * Prints the median time of a fuzzy search, for every misspelled name.
+     */
+    @Test
+    public void benchmarkFuzzySearch() {
+        for (String[] misspelled : MISSPELLED) {
+            long[] times = new long[ITERATIONS];
+            for (int i = 0; i < WARMUP + ITERATIONS; i++) {
+                long start = System.nanoTime();
+                index.searchFuzzy(misspelled[0], FUZZY_BUDGET, null);
+                if (i >= WARMUP) {
+                    times[i - WARMUP] = System.nanoTime() - start;
+                }
+            }
+            Arrays.sort(times);
+            System.out.println("\"" + misspelled[0] + "\": fuzzy " + times[ITERATIONS / 2] / 1000 + " us");
+        }
+    }
+
+    /**
+     * @return the streets starting with the query, then the streets and
+     * cities containing it
+     */
+    private static List<Address> scan(String query) {
+        query = AddressIndex.normalize(query);
+        List<Address> prefixed = new ArrayList<Address>();
+        List<Address> containing = new ArrayList<Address>();
+        for (Address address : addresses) {
+            String street = AddressIndex.normalize(address.getStreetname());
+            if (street.startsWith(query)) {
+                prefixed.add(address);
+            } else if (street.contains(query) || AddressIndex.normalize(address.getCity()).contains(query)) {
+                containing.add(address);
+            }
+        }
+        prefixed.addAll(containing);
+        return prefixed;
+    }
+}
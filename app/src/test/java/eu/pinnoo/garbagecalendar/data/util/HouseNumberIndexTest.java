@@ -0,0 +1,197 @@
+/* 
+ * Copyright 2014 Wouter Pinnoo
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.pinnoo.garbagecalendar.data.util;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Random;
+
+import eu.pinnoo.garbagecalendar.Feeds;
+import eu.pinnoo.garbagecalendar.data.Address;
+import eu.pinnoo.garbagecalendar.data.PrimitiveAddress;
+import eu.pinnoo.garbagecalendar.data.Sector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Resolves house numbers in a few overlapping ranges, and in the street list
+ * of extra/, where every answer is checked against the ranges themselves.
+ *
+ * @author Wouter Pinnoo <pinnoo.wouter@gmail.com>
+ */
+public class HouseNumberIndexTest {
+
+    private static final int LOOKUPS = 100000;
+
+    /**
+     * An open range for the whole street with a few ranges inside it, the
+     * first of which runs past all the others.
+     */
+    @Test
+    public void resolvesOverlappingRanges() {
+        Address street = address(1, 0, 2, 0, "L11");
+        Address wide = address(3, 999, 0, 0, "L12");
+        Address first = address(5, 9, 0, 0, "L13");
+        Address second = address(11, 15, 0, 0, "L14");
+        Address last = address(1001, 1011, 0, 0, "L15");
+        HouseNumberIndex index = new HouseNumberIndex(Arrays.asList(street, wide, first, second, last));
+        assertSame(street, index.resolve("Kerkstraat", 1).get(0));
+        assertSame(wide, index.resolve("Kerkstraat", 3).get(0));
+        assertSame(first, index.resolve("Kerkstraat", 9).get(0));
+        assertSame(second, index.resolve("Kerkstraat", 11).get(0));
+        assertSame(wide, index.resolve("Kerkstraat", 17).get(0));
+        assertSame(wide, index.resolve("Kerkstraat", 501).get(0));
+        assertSame(street, index.resolve("Kerkstraat", 1000).get(0));
+        assertSame(last, index.resolve("Kerkstraat", 1011).get(0));
+        assertSame(street, index.resolve("Kerkstraat", 1013).get(0));
+    }
+
+    @Test
+    public void resolvesNothingOutsideTheRanges() {
+        HouseNumberIndex index = new HouseNumberIndex(Arrays.asList(address(1, 9, 2, 10, "L11"),
+                address(21, 29, 0, 0, "L12")));
+        assertTrue(index.resolve("Kerkstraat", 11).isEmpty());
+        assertTrue(index.resolve("Kerkstraat", 31).isEmpty());
+        assertTrue(index.resolve("Kerkstraat", 22).isEmpty());
+    }
+
+    @Test
+    public void resolvesFullAddresses() {
+        Address odd = address(1, 9, 0, 0, "L11");
+        Address even = address(0, 0, 2, 10, "L12");
+        HouseNumberIndex index = new HouseNumberIndex(Arrays.asList(odd, even));
+        assertSame(odd, index.resolve("Kerkstraat 5").get(0));
+        assertSame(even, index.resolve(" kerkstraat, 4b").get(0));
+        assertSame(odd, index.resolve("2101 5").get(0));
+        assertSame(even, index.resolve("2101, 10 a").get(0));
+        assertNull(index.resolve("Kerkstraat"));
+        assertNull(index.resolve("12"));
+    }
+
+    /**
+     * Looks up random numbers in every street of the list that has a street
+     * code, and checks that the answer for every city is the range with the
+     * highest first number that covers the number.
+     */
+    @Test
+    public void agreesWithTheRanges() throws IOException {
+        List<Address> addresses = addresses();
+        HouseNumberIndex index = new HouseNumberIndex(addresses);
+        LinkedHashMap<String, List<Address>> streets = new LinkedHashMap<String, List<Address>>();
+        for (Address address : addresses) {
+            if (address.getCode().length() == 0) {
+                continue;
+            }
+            String key = address.getCode() + "\n" + address.getCity();
+            List<Address> rows = streets.get(key);
+            if (rows == null) {
+                rows = new ArrayList<Address>();
+                streets.put(key, rows);
+            }
+            rows.add(address);
+        }
+        Random random = new Random(1);
+        int hits = 0;
+        for (List<Address> rows : streets.values()) {
+            for (int i = 0; i < 5; i++) {
+                int number = 1 + random.nextInt(1200);
+                Address expected = expected(rows, number);
+                Address actual = null;
+                for (Address address : index.resolve(rows.get(0).getCode(), number)) {
+                    if (address.getCity().equals(rows.get(0).getCity())) {
+                        actual = address;
+                    }
+                }
+                assertSame(rows.get(0).getStreetname() + " " + number, expected, actual);
+                if (actual != null) {
+                    hits++;
+                }
+            }
+        }
+        System.out.println(hits + " house numbers resolved in " + streets.size() + " streets");
+    }
+
+    /**
+     * Prints the average time of a lookup in the longest street of the list.
+     */
+    @Test
+    public void benchmarkLookups() throws IOException {
+        HouseNumberIndex index = new HouseNumberIndex(addresses());
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                index.resolve("Antwerpsesteenweg", 1 + i % 1100);
+            }
+            if (round == 1) {
+                System.out.println("house number lookup: " + (System.nanoTime() - start) / LOOKUPS + " ns");
+            }
+        }
+    }
+
+    /**
+     * @return the row with the highest first number that covers the number,
+     * else the first row without numbers
+     */
+    private static Address expected(List<Address> rows, int number) {
+        boolean odd = number % 2 == 1;
+        Address best = null;
+        int bestBegin = -1;
+        Address rest = null;
+        for (Address address : rows) {
+            int begin = odd ? address.getNrOddBegin() : address.getNrEvenBegin();
+            int end = odd ? address.getNrOddEnd() : address.getNrEvenEnd();
+            if (begin <= 0 && end <= 0) {
+                boolean none = address.getNrOddBegin() <= 0 && address.getNrOddEnd() <= 0
+                        && address.getNrEvenBegin() <= 0 && address.getNrEvenEnd() <= 0;
+                if (none && rest == null) {
+                    rest = address;
+                }
+                continue;
+            }
+            begin = Math.max(0, begin);
+            if (begin <= number && (end <= 0 || number <= end) && begin >= bestBegin) {
+                best = address;
+                bestBegin = begin;
+            }
+        }
+        return best != null ? best : rest;
+    }
+
+    private static Address address(int oddBegin, int oddEnd, int evenBegin, int evenEnd, String sector) {
+        return new Address("Kerkstraat", "2101", oddBegin, oddEnd, evenBegin, evenEnd, 9000, "Gent",
+                Sector.valueOf(sector));
+    }
+
+    private static List<Address> addresses() throws IOException {
+        Gson gson = new Gson();
+        List<Address> addresses = new ArrayList<Address>();
+        for (JsonObject row : Feeds.rows(Feeds.STREETS)) {
+            addresses.add(new Address(gson.fromJson(row, PrimitiveAddress.class)));
+        }
+        return addresses;
+    }
+}
@@ -0,0 +1,87 @@
+/* 
+ * Copyright 2014 Wouter Pinnoo
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.pinnoo.garbagecalendar.util;
+
+import com.google.gson.JsonObject;
+
+import org.junit.Test;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import eu.pinnoo.garbagecalendar.Feeds;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ * @author Wouter Pinnoo <pinnoo.wouter@gmail.com>
+ */
+public class DateDecoderTest {
+
+    @Test
+    public void decodesIsoDates() {
+        assertEquals(0, DateDecoder.decode("1970-01-01"));
+        assertEquals(DateDecoder.toEpochDay(2016, 2, 29), DateDecoder.decode("2016-02-29"));
+    }
+
+    @Test
+    public void decodesDatesWithoutLeadingZeros() {
+        int day = DateDecoder.toEpochDay(2013, 1, 2);
+        assertEquals(day, DateDecoder.decode("2/01/2013"));
+        assertEquals(day, DateDecoder.decode("02/01/2013"));
+        assertEquals(day, DateDecoder.decode("2/1/2013"));
+        assertEquals(day, DateDecoder.decode("02/1/2013"));
+    }
+
+    @Test
+    public void rejectsMalformedDates() {
+        String[] malformed = {null, "", "2013", "/01/2013", "2//2013", "123/01/2013", "2/123/2013",
+            "2/01/13", "2/01/20133", "a/01/2013", "2/0b/2013", "31/02/2013", "2016-02-30", "2016/02/03"};
+        for (String str : malformed) {
+            assertEquals(str, DateDecoder.INVALID, DateDecoder.decode(str));
+        }
+    }
+
+    /**
+     * Every row of the dd/MM/yyyy feed decodes, including the ones written
+     * without a leading zero, to the day SimpleDateFormat reads.
+     */
+    @Test
+    public void decodesEveryRowOfTheCollectionFeed() throws Exception {
+        List<JsonObject> rows = Feeds.rows(Feeds.COLLECTIONS);
+        SimpleDateFormat format = new SimpleDateFormat("d/M/yyyy", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        format.setLenient(false);
+        int unpadded = 0;
+        for (JsonObject row : rows) {
+            String datum = row.get("datum").getAsString();
+            if (datum.length() < 10) {
+                unpadded++;
+            }
+            assertEquals(datum, expected(format, datum), DateDecoder.decode(datum));
+        }
+        assertTrue("the feed has dates without a leading zero", unpadded > 0);
+    }
+
+    private static int expected(SimpleDateFormat format, String datum) throws ParseException {
+        return (int) (format.parse(datum).getTime() / (24 * 60 * 60 * 1000L));
+    }
+}
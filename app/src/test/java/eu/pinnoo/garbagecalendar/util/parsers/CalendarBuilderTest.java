@@ -0,0 +1,209 @@
+/* 
+ * Copyright 2014 Wouter Pinnoo
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.pinnoo.garbagecalendar.util.parsers;
+
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+import eu.pinnoo.garbagecalendar.Feeds;
+import eu.pinnoo.garbagecalendar.data.Collection;
+import eu.pinnoo.garbagecalendar.data.PrimitiveCollection;
+import eu.pinnoo.garbagecalendar.data.Sector;
+import eu.pinnoo.garbagecalendar.util.DateDecoder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the single-pass merge of {@link CalendarBuilder} with the merge
+ * the calendar parser used before: a map from each date to
+ * {@code list.indexOf} of its collection, followed by a full sort.
+ *
+ * @author Wouter Pinnoo <pinnoo.wouter@gmail.com>
+ */
+public class CalendarBuilderTest {
+
+    private static final String SECTOR = "L11";
+    private static final int WARMUP = 50;
+    private static final int ITERATIONS = 200;
+
+    @Test
+    public void mergesThe2015FeedLikeTheQuadraticMerge() throws IOException {
+        assertMergesLikeTheQuadraticMerge(read(Feeds.CALENDAR_2015));
+    }
+
+    @Test
+    public void mergesThe2016FeedLikeTheQuadraticMerge() throws IOException {
+        assertMergesLikeTheQuadraticMerge(read(Feeds.CALENDAR_2016));
+    }
+
+    @Test
+    public void sortsAndMergesUnorderedRows() {
+        CalendarBuilder builder = new CalendarBuilder();
+        builder.add(row("L11", "2016-01-05", "REST"));
+        builder.add(row("L11", "2016-01-04", "GFT"));
+        builder.add(row("L11", "2016-01-05", "PMD"));
+        builder.add(row("L11", "2016-01-04", "GLAS"));
+        builder.add(row("L11", "4/01/2016", "REST"));
+        builder.add(row("L11", "2016-13-01", "REST"));
+        List<Collection> calendar = builder.build();
+        assertEquals(2, calendar.size());
+        assertEquals(DateDecoder.toEpochDay(2016, 1, 4), calendar.get(0).getDay());
+        assertEquals(Collection.parseGarbageType("GFT/GLAS/REST"), calendar.get(0).getTypeMask());
+        assertEquals(Collection.parseGarbageType("REST/PMD"), calendar.get(1).getTypeMask());
+        assertEquals(1, builder.getRejected());
+    }
+
+    /**
+     * Times both merges on the feeds of extra/, for the calendar of the
+     * whole city that the parser builds now, and for the calendar of one
+     * sector that it used to build. Only the former is asserted: a single
+     * sector has too few collections for the scans to matter.
+     */
+    @Test
+    public void benchmarkAgainstTheQuadraticMerge() throws IOException {
+        for (String name : new String[]{Feeds.CALENDAR_2015, Feeds.CALENDAR_2016}) {
+            PrimitiveCollection[] rows = read(name);
+            long quadratic = time(rows, null, true);
+            long linear = time(rows, null, false);
+            System.out.println(name + ", " + rows.length + " rows, all sectors: quadratic "
+                    + micros(quadratic) + " us, single pass " + micros(linear) + " us");
+            System.out.println(name + ", " + rows.length + " rows, sector " + SECTOR + ": quadratic "
+                    + micros(time(rows, SECTOR, true)) + " us, single pass " + micros(time(rows, SECTOR, false)) + " us");
+            assertTrue(name, linear < quadratic);
+        }
+    }
+
+    private static long micros(long total) {
+        return total / ITERATIONS / 1000;
+    }
+
+    /**
+     * @param sector the sector to build the calendar of, or null for the
+     * whole city
+     * @return the time of {@link #ITERATIONS} runs, in nanoseconds
+     */
+    private static long time(PrimitiveCollection[] rows, String sector, boolean quadratic) {
+        long total = 0;
+        for (int i = 0; i < WARMUP + ITERATIONS; i++) {
+            long start = System.nanoTime();
+            int size = quadratic ? quadraticMerge(rows, sector).size() : build(rows, sector).size();
+            long elapsed = System.nanoTime() - start;
+            assertTrue(size > 0);
+            if (i >= WARMUP) {
+                total += elapsed;
+            }
+        }
+        return total;
+    }
+
+    private static void assertMergesLikeTheQuadraticMerge(PrimitiveCollection[] rows) {
+        List<Collection> calendar = build(rows);
+        HashMap<Sector, List<int[]>> bySector = new HashMap<Sector, List<int[]>>();
+        for (Collection col : calendar) {
+            List<int[]> list = bySector.get(col.getSector());
+            if (list == null) {
+                list = new ArrayList<int[]>();
+                bySector.put(col.getSector(), list);
+            }
+            list.add(new int[]{col.getDay(), col.getTypeMask()});
+        }
+        assertTrue(bySector.size() > 1);
+        for (Sector sector : bySector.keySet()) {
+            List<int[]> expected = quadraticMerge(rows, sector.getRawCode());
+            List<int[]> actual = bySector.get(sector);
+            assertEquals(sector.toString(), expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(sector.toString(), expected.get(i)[0], actual.get(i)[0]);
+                assertEquals(sector.toString(), expected.get(i)[1], actual.get(i)[1]);
+            }
+        }
+    }
+
+    private static List<Collection> build(PrimitiveCollection[] rows) {
+        return build(rows, null);
+    }
+
+    private static List<Collection> build(PrimitiveCollection[] rows, String sector) {
+        CalendarBuilder builder = new CalendarBuilder();
+        for (PrimitiveCollection row : rows) {
+            if (sector == null || sector.equals(row.sector)) {
+                builder.add(row);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * The merge of the parser before the builder, on {day, type mask} pairs
+     * instead of collections: pairs compare by identity, like collections,
+     * so {@code indexOf} scans the list the same way. For the whole city,
+     * rows are merged per sector and date; the pairs are then only sorted by
+     * day, which is enough to time it.
+     *
+     * @param sector the sector to merge the rows of, or null for all rows
+     */
+    private static List<int[]> quadraticMerge(PrimitiveCollection[] rows, String sector) {
+        ArrayList<int[]> list = new ArrayList<int[]>();
+        HashMap<String, Integer> previousCollections = new HashMap<String, Integer>();
+        for (PrimitiveCollection row : rows) {
+            int[] col = {DateDecoder.decode(row.datum), Collection.parseGarbageType(row.fractie)};
+            if (sector == null || sector.equals(row.sector)) {
+                String key = sector == null ? row.sector + "\n" + row.datum : row.datum;
+                if (previousCollections.containsKey(key)) {
+                    list.get(previousCollections.get(key))[1] |= col[1];
+                } else {
+                    list.add(col);
+                    previousCollections.put(key, list.indexOf(col));
+                }
+            }
+        }
+        Collections.sort(list, new Comparator<int[]>() {
+            public int compare(int[] lhs, int[] rhs) {
+                return lhs[0] < rhs[0] ? -1 : (lhs[0] == rhs[0] ? 0 : 1);
+            }
+        });
+        return list;
+    }
+
+    private static PrimitiveCollection row(String sector, String datum, String fractie) {
+        PrimitiveCollection row = new PrimitiveCollection();
+        row.sector = sector;
+        row.datum = datum;
+        row.fractie = fractie;
+        return row;
+    }
+
+    private static PrimitiveCollection[] read(String name) throws IOException {
+        Reader reader = new InputStreamReader(new FileInputStream(Feeds.file(name)), "UTF-8");
+        try {
+            return new Gson().fromJson(reader, PrimitiveCollection[].class);
+        } finally {
+            reader.close();
+        }
+    }
+}
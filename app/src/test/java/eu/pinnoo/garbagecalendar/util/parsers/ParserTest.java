@@ -0,0 +1,266 @@
+/* 
+ * Copyright 2014 Wouter Pinnoo
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.pinnoo.garbagecalendar.util.parsers;
+
+import android.content.ContextWrapper;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import eu.pinnoo.garbagecalendar.Feeds;
+import eu.pinnoo.garbagecalendar.data.caches.ValidatorCache;
+import eu.pinnoo.garbagecalendar.util.parsers.Parser.Report;
+import eu.pinnoo.garbagecalendar.util.parsers.Parser.Result;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Loads a feed from a local stand-in for the feed server, which serves a
+ * file of extra/ with an ETag and answers conditional requests.
+ *
+ * @author Wouter Pinnoo <pinnoo.wouter@gmail.com>
+ */
+public class ParserTest {
+
+    private static File cacheDir;
+    private HttpServer server;
+    private byte[] feed;
+    private volatile String eTag = "\"v1\"";
+    private volatile boolean gzip = false;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger transfers = new AtomicInteger();
+
+    @BeforeClass
+    public static void initializeCache() throws IOException {
+        cacheDir = File.createTempFile("parsertest", "");
+        if (!cacheDir.delete() || !cacheDir.mkdirs()) {
+            throw new IOException("Cannot create " + cacheDir);
+        }
+        ValidatorCache.initialize(new ContextWrapper(null) {
+            @Override
+            public File getCacheDir() {
+                return cacheDir;
+            }
+        });
+    }
+
+    @Before
+    public void startServer() throws IOException {
+        feed = read(new FileInputStream(Feeds.file(Feeds.CALENDAR_2015)));
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/feed", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                requests.incrementAndGet();
+                exchange.getResponseHeaders().set("ETag", eTag);
+                if (eTag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_MODIFIED, -1);
+                } else {
+                    transfers.incrementAndGet();
+                    String accepted = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                    byte[] sent = feed;
+                    if (gzip && accepted != null && accepted.contains("gzip")) {
+                        exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                        sent = gzip(feed);
+                    }
+                    exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, sent.length);
+                    OutputStream body = exchange.getResponseBody();
+                    body.write(sent);
+                    body.close();
+                }
+                exchange.close();
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void revalidatesAnUnchangedFeed() {
+        FeedParser parser = new FeedParser("unchanged");
+        assertEquals(Result.SUCCESSFUL, parser.load(staging()).getResult());
+        Report report = parser.load(staging());
+        assertEquals(Result.NOT_MODIFIED, report.getResult());
+        assertEquals(1, report.getAttempts());
+        assertEquals(0, report.getBytesTransferred());
+        assertEquals(2, requests.get());
+        assertEquals(1, transfers.get());
+        assertArrayEquals(feed, parser.data);
+    }
+
+    @Test
+    public void downloadsAChangedFeed() {
+        FeedParser parser = new FeedParser("changed");
+        assertEquals(Result.SUCCESSFUL, parser.load(staging()).getResult());
+        eTag = "\"v2\"";
+        Report report = parser.load(staging());
+        assertEquals(Result.SUCCESSFUL, report.getResult());
+        assertEquals(feed.length, report.getBytesTransferred());
+        assertEquals(2, transfers.get());
+        assertEquals(eTag, ValidatorCache.getInstance().get(parser.getCacheKey()).getETag());
+    }
+
+    /**
+     * A "304 Not Modified" counts as a check of the feed, so a calendar
+     * that did not change stops being stale.
+     */
+    @Test
+    public void recordsTheRevalidationTime() {
+        FeedParser parser = new FeedParser("revalidated");
+        assertEquals(Result.SUCCESSFUL, parser.load(staging()).getResult());
+        String key = parser.getCacheKey();
+        ValidatorCache.getInstance().put(key, ValidatorCache.getInstance().get(key).revalidated(0));
+        long before = System.currentTimeMillis();
+        assertEquals(Result.NOT_MODIFIED, parser.load(staging()).getResult());
+        assertTrue(ValidatorCache.getInstance().get(key).getChecked() >= before);
+    }
+
+    @Test
+    public void refetchesWhenTheCachedDataIsGone() {
+        FeedParser parser = new FeedParser("lost");
+        assertEquals(Result.SUCCESSFUL, parser.load(staging()).getResult());
+        parser.lost = true;
+        assertEquals(Result.SUCCESSFUL, parser.load(staging()).getResult());
+        assertEquals(3, requests.get());
+        assertEquals(2, transfers.get());
+    }
+
+    /**
+     * The parser asks for a gzipped feed and decompresses it while parsing;
+     * the transferred bytes and the time spent reading the body of both
+     * encodings are printed. Parser measures CPU time with SystemClock,
+     * which is not available in unit tests.
+     */
+    @Test
+    public void transfersGzippedFeeds() {
+        FeedParser plain = new FeedParser("plain");
+        Report identity = plain.load(staging());
+        assertEquals(Result.SUCCESSFUL, identity.getResult());
+        assertEquals(feed.length, identity.getBytesTransferred());
+
+        gzip = true;
+        FeedParser compressed = new FeedParser("gzipped");
+        Report gzipped = compressed.load(staging());
+        assertEquals(Result.SUCCESSFUL, gzipped.getResult());
+        assertArrayEquals(feed, compressed.data);
+        assertTrue(gzipped.getBytesTransferred() < feed.length / 4);
+        assertEquals("gzip", ValidatorCache.getInstance().get(compressed.getCacheKey()).getEncoding());
+        System.out.println(Feeds.CALENDAR_2015 + ": " + identity.getBytesTransferred() + " bytes plain, read in "
+                + plain.readTime / 1000 + " us; " + gzipped.getBytesTransferred() + " bytes gzipped, read in "
+                + compressed.readTime / 1000 + " us");
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GZIPOutputStream stream = new GZIPOutputStream(out);
+        stream.write(data);
+        stream.close();
+        return out.toByteArray();
+    }
+
+    private static File staging() {
+        return new File(cacheDir, "staging");
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Keeps the feed as it was downloaded. The cached data only counts as
+     * loaded while it is not marked lost.
+     */
+    private class FeedParser extends Parser {
+
+        private final String key;
+        private byte[] data;
+        private boolean lost;
+        private long readTime;
+
+        FeedParser(String key) {
+            this.key = key;
+        }
+
+        @Override
+        protected String getURL() {
+            return "http://127.0.0.1:" + server.getAddress().getPort() + "/feed";
+        }
+
+        @Override
+        public String getCacheKey() {
+            return key;
+        }
+
+        @Override
+        protected boolean isCached() {
+            return data != null;
+        }
+
+        @Override
+        protected boolean loadCachedData() {
+            return data != null && !lost;
+        }
+
+        @Override
+        protected Result fetchData(ArrayList list) {
+            data = (byte[]) list.get(0);
+            lost = false;
+            return Result.SUCCESSFUL;
+        }
+
+        @Override
+        protected ArrayList downloadData(InputStream inp) throws IOException {
+            ArrayList<byte[]> list = new ArrayList<byte[]>();
+            long start = System.nanoTime();
+            list.add(read(inp));
+            readTime = System.nanoTime() - start;
+            return list;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/* 
+ * Copyright 2014 Wouter Pinnoo
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.pinnoo.garbagecalendar.util.tasks;
+
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ * @author Wouter Pinnoo <pinnoo.wouter@gmail.com>
+ */
+public class SingleFlightTest {
+
+    private static final long TIMEOUT = 5000;
+
+    /**
+     * A caller that asks for a key while its load is running waits for that
+     * load instead of starting another one.
+     */
+    @Test
+    public void concurrentCallersShareOneLoad() throws Exception {
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Callable<Integer> load = new Callable<Integer>() {
+            public Integer call() throws Exception {
+                int count = loads.incrementAndGet();
+                started.countDown();
+                release.await(TIMEOUT, TimeUnit.MILLISECONDS);
+                return count;
+            }
+        };
+        final Integer[] results = new Integer[2];
+        Thread first = caller(load, results, 0);
+        Thread second = caller(load, results, 1);
+        first.start();
+        assertTrue(started.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        second.start();
+        awaitBlocked(second);
+        release.countDown();
+        first.join(TIMEOUT);
+        second.join(TIMEOUT);
+
+        assertEquals(1, loads.get());
+        assertEquals(Integer.valueOf(1), results[0]);
+        assertEquals(Integer.valueOf(1), results[1]);
+    }
+
+    @Test
+    public void sequentialCallersLoadAgain() {
+        final AtomicInteger loads = new AtomicInteger();
+        Callable<Integer> load = new Callable<Integer>() {
+            public Integer call() {
+                return loads.incrementAndGet();
+            }
+        };
+        assertEquals(Integer.valueOf(1), SingleFlight.run("sequential", load, -1));
+        assertEquals(Integer.valueOf(2), SingleFlight.run("sequential", load, -1));
+    }
+
+    @Test
+    public void failedLoadsReturnTheFailedValue() {
+        Callable<Integer> load = new Callable<Integer>() {
+            public Integer call() {
+                throw new IllegalStateException("load failed");
+            }
+        };
+        assertEquals(Integer.valueOf(-1), SingleFlight.run("failing", load, -1));
+    }
+
+    private static Thread caller(final Callable<Integer> load, final Integer[] results, final int index) {
+        return new Thread(new Runnable() {
+            public void run() {
+                results[index] = SingleFlight.run("shared", load, -1);
+            }
+        });
+    }
+
+    /**
+     * Waits until the thread blocks, which it does either on the running
+     * load or, had it started its own, on the latch of that load.
+     */
+    private static void awaitBlocked(Thread thread) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (thread.getState() != Thread.State.WAITING && thread.getState() != Thread.State.TIMED_WAITING) {
+            assertTrue("the second caller never blocked", System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+    }
+}